@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.philippn.springremotingautoconfigure.benchmarks.service.PayloadService;
+import com.github.philippn.springremotingautoconfigure.benchmarks.service.PayloadServiceImpl;
+import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.client.spring.MethodInvocationDescriptor;
+import com.github.philippn.springremotingautoconfigure.client.spring.MethodInvocationEntity;
+import com.github.philippn.springremotingautoconfigure.server.spring.RemotingController;
+import com.github.philippn.springremotingautoconfigure.util.BufferPool;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Client and server side codec setup shared by the in-process benchmarks,
+ * configured the same way as the proxy and the controller configure themselves.
+ */
+class Codec {
+
+    final CBORMapper cborMapper;
+    final CBORFactory cborFactory;
+    final BufferPool bufferPool;
+    final RemotingController controller;
+
+    Codec() throws Exception {
+        CborMapperFactory cborMapperFactory = new CborMapperFactory(null);
+        this.cborMapper = cborMapperFactory.newMapper();
+        this.cborFactory = new CBORFactory(cborMapper);
+        this.bufferPool = new BufferPool(64 * 1024, 16);
+        this.controller = new RemotingController();
+        controller.setService(new PayloadServiceImpl());
+        controller.setServiceInterface(PayloadService.class);
+        controller.setCborMapperFactory(cborMapperFactory);
+        controller.afterPropertiesSet();
+    }
+
+    MethodInvocationDescriptor newDescriptor(PayloadShape shape) {
+        return new MethodInvocationDescriptor(shape.getMethod(), cborMapper, cborFactory);
+    }
+
+    byte[] encodeRequest(MethodInvocationDescriptor descriptor, Object[] arguments) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MethodInvocationEntity entity = newEntity(descriptor, arguments)) {
+            entity.writeTo(bytes);
+        }
+        return bytes.toByteArray();
+    }
+
+    MethodInvocationEntity newEntity(MethodInvocationDescriptor descriptor, Object[] arguments) throws Exception {
+        return new MethodInvocationEntity(descriptor, arguments, cborFactory, bufferPool, false);
+    }
+
+    static MockHttpServletRequest newRequest(byte[] content) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/remoting/PayloadService");
+        request.setContentType("application/cbor");
+        request.setContent(content);
+        return request;
+    }
+
+    byte[] handle(byte[] requestContent) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.handleRequest(newRequest(requestContent), response);
+        return response.getContentAsByteArray();
+    }
+}
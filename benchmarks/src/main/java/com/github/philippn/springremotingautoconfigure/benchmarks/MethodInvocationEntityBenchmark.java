@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks;
+
+import com.github.philippn.springremotingautoconfigure.client.spring.MethodInvocationDescriptor;
+import com.github.philippn.springremotingautoconfigure.client.spring.MethodInvocationEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding of invocations on the client side.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodInvocationEntityBenchmark {
+
+    @Param
+    private PayloadShape shape;
+
+    private Codec codec;
+    private MethodInvocationDescriptor descriptor;
+    private Object[] arguments;
+
+    @Setup
+    public void setup() throws Exception {
+        codec = new Codec();
+        descriptor = codec.newDescriptor(shape);
+        arguments = shape.newArguments();
+    }
+
+    @Benchmark
+    public void encode() throws Exception {
+        try (MethodInvocationEntity entity = codec.newEntity(descriptor, arguments)) {
+            entity.writeTo(OutputStream.nullOutputStream());
+        }
+    }
+}
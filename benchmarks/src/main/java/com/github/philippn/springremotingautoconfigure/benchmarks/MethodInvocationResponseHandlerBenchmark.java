@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks;
+
+import com.github.philippn.springremotingautoconfigure.client.spring.MethodInvocationDescriptor;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures response decoding on the client side.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodInvocationResponseHandlerBenchmark {
+
+    private static final ContentType CBOR = ContentType.create("application/cbor");
+
+    @Param
+    private PayloadShape shape;
+
+    private MethodInvocationDescriptor descriptor;
+    private byte[] responseContent;
+
+    @Setup
+    public void setup() throws Exception {
+        Codec codec = new Codec();
+        descriptor = codec.newDescriptor(shape);
+        responseContent = codec.handle(codec.encodeRequest(descriptor, shape.newArguments()));
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        BasicClassicHttpResponse response = new BasicClassicHttpResponse(200);
+        response.setEntity(new ByteArrayEntity(responseContent, CBOR));
+        return descriptor.getResponseHandler().handleResponse(response);
+    }
+}
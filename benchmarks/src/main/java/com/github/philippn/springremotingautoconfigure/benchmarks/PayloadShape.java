@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks;
+
+import com.github.philippn.springremotingautoconfigure.benchmarks.service.Item;
+import com.github.philippn.springremotingautoconfigure.benchmarks.service.Node;
+import com.github.philippn.springremotingautoconfigure.benchmarks.service.PayloadService;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The payload shapes measured by the benchmarks, each bound to a method of {@link PayloadService}.
+ */
+public enum PayloadShape {
+
+    SMALL_SCALARS("add", int.class, int.class) {
+        @Override
+        public Object[] newArguments() {
+            return new Object[] { 17, 25 };
+        }
+
+        @Override
+        public Object call(PayloadService service, Object[] arguments) {
+            return service.add((Integer) arguments[0], (Integer) arguments[1]);
+        }
+    },
+
+    LARGE_COLLECTION("echoItems", List.class) {
+        @Override
+        public Object[] newArguments() {
+            List<Item> items = new ArrayList<>(COLLECTION_SIZE);
+            for (int i = 0; i < COLLECTION_SIZE; i++) {
+                items.add(new Item(i, "item-" + i, i * 0.25d, List.of("tag-" + (i % 7), "tag-" + (i % 13))));
+            }
+            return new Object[] { items };
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object call(PayloadService service, Object[] arguments) {
+            return service.echoItems((List<Item>) arguments[0]);
+        }
+    },
+
+    DEEP_GRAPH("echoTree", Node.class) {
+        @Override
+        public Object[] newArguments() {
+            return new Object[] { newTree(0) };
+        }
+
+        private Node newTree(int depth) {
+            Node node = new Node("node-" + depth, depth);
+            if (depth < TREE_DEPTH) {
+                for (int i = 0; i < TREE_FAN_OUT; i++) {
+                    node.getChildren().add(newTree(depth + 1));
+                }
+            }
+            return node;
+        }
+
+        @Override
+        public Object call(PayloadService service, Object[] arguments) {
+            return service.echoTree((Node) arguments[0]);
+        }
+    };
+
+    static final int COLLECTION_SIZE = 1000;
+    static final int TREE_DEPTH = 7;
+    static final int TREE_FAN_OUT = 3;
+
+    private final Method method;
+
+    PayloadShape(String methodName, Class<?>... parameterTypes) {
+        try {
+            this.method = PayloadService.class.getMethod(methodName, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public abstract Object[] newArguments();
+
+    public abstract Object call(PayloadService service, Object[] arguments);
+}
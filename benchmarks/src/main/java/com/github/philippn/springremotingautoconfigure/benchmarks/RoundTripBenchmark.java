@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks;
+
+import com.github.philippn.springremotingautoconfigure.benchmarks.service.PayloadService;
+import com.github.philippn.springremotingautoconfigure.sample.TimeService;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full round trips through proxies and an embedded server over the loopback interface.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PingService pingService;
+    private TimeService timeService;
+    private PayloadService payloadService;
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        @Param
+        private PayloadShape shape;
+
+        private Object[] arguments;
+
+        @Setup
+        public void setup() {
+            arguments = shape.newArguments();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("remote.baseUrl", "http://localhost:" + port)));
+        pingService = context.getBean("PingServiceProxy", PingService.class);
+        timeService = context.getBean("TimeServiceProxy", TimeService.class);
+        payloadService = context.getBean("PayloadServiceProxy", PayloadService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String ping() throws PingException {
+        return pingService.ping("ping");
+    }
+
+    @Benchmark
+    public LocalDateTime serverTime() {
+        return timeService.serverTime();
+    }
+
+    @Benchmark
+    public Object payload(Payload payload) {
+        return payload.shape.call(payloadService, payload.arguments);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tree node used for deep object graph payloads.
+ */
+public class Node {
+
+    private String label;
+    private int value;
+    private List<Node> children = new ArrayList<>();
+
+    Node() {
+    }
+
+    public Node(String label, int value) {
+        this.label = label;
+        this.value = value;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public List<Node> getChildren() {
+        return children;
+    }
+}
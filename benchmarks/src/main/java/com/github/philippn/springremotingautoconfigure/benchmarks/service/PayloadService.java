@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.benchmarks.service;
+
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
+
+import java.util.List;
+
+/**
+ * Service exercising the payload shapes measured by the benchmarks.
+ */
+@RemoteExport
+public interface PayloadService {
+
+    int add(int a, int b);
+
+    List<Item> echoItems(List<Item> items);
+
+    Node echoTree(Node root);
+}
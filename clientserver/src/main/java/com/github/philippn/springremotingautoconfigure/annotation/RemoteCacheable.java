@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to cache the results of a method of a {@link RemoteExport} interface in its proxy.
+ * Results are cached per distinct encoded arguments, so the method should be free of side effects
+ * and its results should not be modified by callers, since cached instances are shared.
+ * <p>Ignored on methods returning {@link Void}, a {@link java.util.concurrent.CompletionStage} or
+ * a streaming result, and on methods with a streaming argument.
+ *
+ * @author Philipp Nanz
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RemoteCacheable {
+
+    /**
+     * How long a result is cached after it has been received.
+     */
+    long ttl() default 60;
+
+    /**
+     * The unit of {@link #ttl()}.
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * The maximum number of cached results.
+     */
+    long maxEntries() default 1000;
+
+    /**
+     * The maximum total size in bytes of the encoded arguments and results of all cached entries.
+     * If positive, bounds the cache instead of {@link #maxEntries()}.
+     */
+    long maxBytes() default -1;
+}
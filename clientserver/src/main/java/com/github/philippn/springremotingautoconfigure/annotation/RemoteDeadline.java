@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation setting a deadline for each invocation of a method of a {@link RemoteExport} interface,
+ * or of all its methods if placed on the interface. An earlier deadline set by
+ * {@link com.github.philippn.springremotingautoconfigure.util.DeadlineContext} takes precedence.
+ * <p>The proxy stops waiting for the response once the deadline has passed, and the server drops
+ * the invocation if it has not been started or its result not been written by then. Either way, a
+ * {@link com.github.philippn.springremotingautoconfigure.util.DeadlineExceededException} is thrown.
+ *
+ * @author Philipp Nanz
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RemoteDeadline {
+
+    /**
+     * The time an invocation may take.
+     */
+    long value();
+
+    /**
+     * The unit of {@link #value()}.
+     */
+    TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+}
@@ -43,4 +43,48 @@ public @interface RemoteExport {
      * @see org.springframework.remoting.support.RemoteExporter#setRegisterTraceInterceptor(boolean)
      */
     boolean registerTraceInterceptor() default true;
+
+    /**
+     * The name of an {@link java.util.concurrent.Executor} bean on which invocations of this
+     * service are run, so that they do not occupy request threads of the servlet container.
+     * The invocations of batch requests are then run in parallel. By default, invocations
+     * are run on the request thread.
+     */
+    String executor() default "";
+
+    /**
+     * The name of a bulkhead, i.e. a bounded executor of its own, on which invocations of this
+     * service are run, isolating them from services assigned to other bulkheads and from the request
+     * threads of the servlet container. Services naming the same bulkhead share it. Its threads,
+     * queue size and rejection policy are configured by the <code>remote.server.bulkheads.&lt;name&gt;.*</code>
+     * properties, see {@link com.github.philippn.springremotingautoconfigure.server.spring.BulkheadExecutorFactoryBean}.
+     * Defaults to the value of the property <code>remote.server.services.&lt;SimpleName&gt;.bulkhead</code>,
+     * if set. Ignored if an {@link #executor()} is named.
+     */
+    String bulkhead() default "";
+
+    /**
+     * The minimum size in bytes from which responses of this service are compressed, if the
+     * client accepts a supported content coding. Defaults to the value of the property
+     * <code>remote.server.compression.threshold</code>, which in turn defaults to no compression.
+     * Use {@link Integer#MAX_VALUE} to never compress responses of this service.
+     */
+    int compressionThreshold() default -1;
+
+    /**
+     * The name of a <code>CloseableHttpClient</code> bean through which proxies of this service
+     * send invocations. By default, proxies use the <code>CloseableHttpClient</code> bean of the
+     * application if there is exactly one, or otherwise a pooled client configured by the
+     * <code>remote.http.*</code> properties, which can be overridden for this service by the
+     * <code>remote.services.&lt;SimpleName&gt;.http.*</code> properties.
+     */
+    String httpClient() default "";
+
+    /**
+     * Set whether to encode POJOs and records of this service positionally as arrays, omitting
+     * property names, see {@link com.github.philippn.springremotingautoconfigure.cbor.CompactCborMapperCustomizer}.
+     * Both peers then have to share the same classes, which the server verifies by the schema
+     * fingerprint sent with each request, rejecting mismatched requests with status 409.
+     */
+    boolean compact() default false;
 }
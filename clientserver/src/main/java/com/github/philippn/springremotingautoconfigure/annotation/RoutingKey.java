@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation marking the parameter of a method of a {@link RemoteExport} interface whose argument
+ * routes the invocation. If the service has several endpoints, invocations are routed by consistent
+ * hashing of the encoded argument, so that all invocations for the same key reach the same endpoint
+ * as long as it is available. If it is ejected, only its keys move to other endpoints.
+ * <p>At most one parameter of a method may be annotated. Invocations of such methods are not batched.
+ *
+ * @author Philipp Nanz
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RoutingKey {
+}
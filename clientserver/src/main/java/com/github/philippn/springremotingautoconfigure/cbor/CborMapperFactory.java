@@ -17,6 +17,8 @@ package com.github.philippn.springremotingautoconfigure.cbor;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
 import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.github.philippn.springremotingautoconfigure.cbor.mixin.ThrowableMixin;
 
@@ -34,6 +36,33 @@ public class CborMapperFactory {
     }
 
     public CBORMapper newMapper() {
+        return newBuilder().build();
+    }
+
+    /**
+     * Creates a mapper for the compact encoding, applying the {@link CompactCborMapperCustomizer}
+     * after all other customizers.
+     */
+    public CBORMapper newCompactMapper() {
+        CBORMapper.Builder builder = newBuilder();
+        new CompactCborMapperCustomizer().apply(builder);
+        return builder.build();
+    }
+
+    /**
+     * Creates a factory for the parsers and generators of the given mapper. Parsers resolve string
+     * references (CBOR tags 256 and 25) in any case, whereas generators only write them if
+     * <code>stringRefs</code> is set, since older peers cannot read them.
+     */
+    public static CBORFactory newFactory(CBORMapper mapper, boolean stringRefs) {
+        CBORFactory factory = new CBORFactory(mapper);
+        if (stringRefs) {
+            factory.enable(CBORGenerator.Feature.STRINGREF);
+        }
+        return factory;
+    }
+
+    private CBORMapper.Builder newBuilder() {
         CBORMapper.Builder builder = CBORMapper.builder()
                 .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
                 .addMixIn(Throwable.class, ThrowableMixin.class)
@@ -43,6 +72,6 @@ public class CborMapperFactory {
                 customizer.apply(builder);
             }
         }
-        return builder.build();
+        return builder;
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.cbor;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+/**
+ * Customizer for the compact encoding, in which POJOs and records are encoded positionally as
+ * arrays of their property values instead of maps from property names to values. Properties
+ * are ordered alphabetically, following the components of records, so that both peers agree
+ * on the order as long as they share the same classes; see {@link SchemaFingerprint}.
+ * <p>JDK and Jackson types, enums, collections, maps and exceptions keep their regular encoding,
+ * as do classes with an explicit {@link JsonFormat} shape.
+ *
+ * @author Philipp Nanz
+ */
+public class CompactCborMapperCustomizer implements CborMapperCustomizer {
+
+    private static final JsonFormat.Value ARRAY = JsonFormat.Value.forShape(JsonFormat.Shape.ARRAY);
+
+    @Override
+    public void apply(CBORMapper.Builder builder) {
+        builder.enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                .addModule(new SimpleModule("CompactCbor") {
+
+                    @Override
+                    public void setupModule(SetupContext context) {
+                        super.setupModule(context);
+                        // Secondary, so that explicit annotations take precedence
+                        context.appendAnnotationIntrospector(new PositionalIntrospector());
+                    }
+                });
+    }
+
+    /**
+     * @return whether instances of the given class are encoded positionally
+     */
+    static boolean isPositional(Class<?> type) {
+        if (type.isInterface() || type.isArray() || type.isPrimitive() || type.isEnum() ||
+                Modifier.isAbstract(type.getModifiers()) || Throwable.class.isAssignableFrom(type) ||
+                Iterable.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return false;
+        }
+        String name = type.getName();
+        return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("jdk.") &&
+                !name.startsWith("com.fasterxml.");
+    }
+
+    private static class PositionalIntrospector extends NopAnnotationIntrospector {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public JsonFormat.Value findFormat(Annotated annotated) {
+            return annotated instanceof AnnotatedClass && isPositional(annotated.getRawType()) ? ARRAY : null;
+        }
+    }
+}
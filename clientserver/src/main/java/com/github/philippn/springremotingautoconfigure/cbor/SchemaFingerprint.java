@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.cbor;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.google.common.hash.Hashing;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fingerprint of the compact encoding of a service: its methods, and the positional property
+ * order of every class reachable from their parameters and results. Peers in compact mode
+ * send it with each request, so that a server rejects clients whose classes differ.
+ *
+ * @author Philipp Nanz
+ */
+public class SchemaFingerprint {
+
+    /**
+     * Name of the request header carrying the fingerprint.
+     */
+    public static final String HEADER_NAME = "X-Remoting-Schema";
+
+    /**
+     * Computes the fingerprint of the given service for the given mapper, which is expected
+     * to be customized by {@link CompactCborMapperCustomizer}.
+     */
+    public static String compute(ObjectMapper mapper, Class<?> serviceInterface) {
+        TypeFactory typeFactory = mapper.getTypeFactory();
+        StringBuilder schema = new StringBuilder();
+        Map<String, String> classes = new TreeMap<>();
+        Method[] methods = serviceInterface.getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::toGenericString));
+        for (Method method : methods) {
+            schema.append(method.toGenericString()).append('\n');
+            for (Type parameterType : method.getGenericParameterTypes()) {
+                collect(mapper, typeFactory.constructType(parameterType), classes);
+            }
+            collect(mapper, RemotingUtils.resolveResultType(typeFactory, method), classes);
+        }
+        classes.forEach((name, properties) -> schema.append(name).append(properties).append('\n'));
+        return Hashing.sha256().hashString(schema, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
+    private static void collect(ObjectMapper mapper, JavaType type, Map<String, String> classes) {
+        for (int i = 0; i < type.containedTypeCount(); i++) {
+            collect(mapper, type.containedType(i), classes);
+        }
+        if (type.getContentType() != null) {
+            collect(mapper, type.getContentType(), classes);
+        }
+        Class<?> rawType = type.getRawClass();
+        if (!CompactCborMapperCustomizer.isPositional(rawType) || classes.containsKey(rawType.getName())) {
+            return;
+        }
+        // Reserve the entry first, as the class may be reachable from its own properties
+        classes.put(rawType.getName(), "");
+        BeanDescription description = mapper.getSerializationConfig().introspect(type);
+        StringBuilder properties = new StringBuilder("[");
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldSerialize()) {
+                properties.append(property.getName()).append(':')
+                        .append(property.getPrimaryType().toCanonical()).append(',');
+                collect(mapper, property.getPrimaryType(), classes);
+            }
+        }
+        classes.put(rawType.getName(), properties.append(']').toString());
+    }
+}
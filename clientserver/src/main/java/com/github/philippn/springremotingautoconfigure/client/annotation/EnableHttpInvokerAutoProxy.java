@@ -36,4 +36,12 @@ public @interface EnableHttpInvokerAutoProxy {
      * Base packages to scan for interfaces with @RemoteExport annotation.
      */
     String[] basePackages() default {};
+
+    /**
+     * Whether proxies run invocations of methods returning a {@link java.util.concurrent.CompletableFuture}
+     * as blocking calls on virtual threads, instead of using the asynchronous HTTP client.
+     * Can also be enabled by setting the property <code>remote.virtualThreads</code>.
+     * Requires Java 21 or later.
+     */
+    boolean virtualThreads() default false;
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Request entity compressing the wrapped entity while it is written.
+ */
+class CompressingEntity extends HttpEntityWrapper {
+
+    private final ContentCoding coding;
+
+    CompressingEntity(HttpEntity wrappedEntity, ContentCoding coding) {
+        super(wrappedEntity);
+        this.coding = coding;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return coding.getToken();
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        throw new UnsupportedOperationException("Compressed entity is encoded directly into the output stream");
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (OutputStream output = coding.encode(StreamUtils.nonClosing(outStream))) {
+            super.writeTo(output);
+        }
+        outStream.flush();
+    }
+}
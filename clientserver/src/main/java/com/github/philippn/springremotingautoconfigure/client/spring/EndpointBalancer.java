@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client-side balancer distributing the invocations of a proxy over the endpoints of its service.
+ * <p>An endpoint failing {@code maxFailures} times in a row, by an I/O error, a 5xx status or a
+ * response slower than the slow threshold, is ejected. Once its ejection time has elapsed, a single
+ * invocation is let through to probe it: if that succeeds, the endpoint is restored, otherwise it
+ * is ejected again for twice as long, up to 16 times the ejection time. If all endpoints are
+ * ejected, the one due to return first is used anyway. A single endpoint is never ejected.
+ * <p>Invocations with a {@link com.github.philippn.springremotingautoconfigure.annotation.RoutingKey}
+ * are routed by consistent hashing instead: each endpoint owns the ranges of a ring of hashes
+ * preceding its virtual nodes, and a key goes to the first available endpoint at or after its hash.
+ * Ejecting an endpoint thus only moves its own keys, spread over the other endpoints.
+ * <p>Each endpoint also keeps the capabilities negotiated with its server, which may differ
+ * between endpoints while the servers are upgraded one by one.
+ * <p>Endpoints are selected for an invocation as a {@link Selection}, which the invocation is
+ * completed by and which tells the probe of an ejected endpoint apart from other invocations
+ * still in progress on it.
+ *
+ * @author Philipp Nanz
+ */
+public class EndpointBalancer {
+
+    static final Logger logger = LoggerFactory.getLogger(EndpointBalancer.class);
+
+    private static final int MAX_EJECTION_FACTOR = 16;
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final Endpoint[] endpoints;
+    private final Strategy strategy;
+    private final int maxFailures;
+    private final long slowThresholdNanos;
+    private final long ejectionNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final long[] ring;
+    private final Endpoint[] ringOwners;
+
+    /**
+     * @param serviceUrls   the absolute URLs of the service at its endpoints
+     * @param strategy      the strategy to select endpoints with
+     * @param maxFailures   the number of consecutive failures after which an endpoint is ejected
+     * @param slowThreshold the time in milliseconds after which a response counts as failure, or 0 for none
+     * @param ejectionTime  the time in milliseconds an endpoint is ejected for at first
+     */
+    public EndpointBalancer(List<String> serviceUrls, Strategy strategy, int maxFailures,
+                            long slowThreshold, long ejectionTime) {
+        this(serviceUrls, strategy, maxFailures, slowThreshold, ejectionTime, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param virtualNodes the number of virtual nodes per endpoint on the ring for routing keys
+     */
+    public EndpointBalancer(List<String> serviceUrls, Strategy strategy, int maxFailures,
+                            long slowThreshold, long ejectionTime, int virtualNodes) {
+        if (serviceUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+        this.endpoints = serviceUrls.stream().map(Endpoint::new).toArray(Endpoint[]::new);
+        this.strategy = strategy;
+        this.maxFailures = Math.max(maxFailures, 1);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThreshold);
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionTime);
+        this.ring = new long[endpoints.length * Math.max(virtualNodes, 1)];
+        this.ringOwners = new Endpoint[ring.length];
+        buildRing();
+    }
+
+    /**
+     * Places the virtual nodes of all endpoints on the ring, hashing the service URL of the
+     * endpoint and the number of the node, so that every client builds the same ring.
+     */
+    private void buildRing() {
+        int nodesPerEndpoint = ring.length / endpoints.length;
+        long[] hashes = new long[ring.length];
+        Integer[] order = new Integer[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            String node = endpoints[i / nodesPerEndpoint].serviceUrl + "#" + (i % nodesPerEndpoint);
+            hashes[i] = Hashing.murmur3_128().hashString(node, StandardCharsets.UTF_8).asLong();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = hashes[order[i]];
+            ringOwners[i] = endpoints[order[i] / nodesPerEndpoint];
+        }
+    }
+
+    /**
+     * Selects the endpoint for an invocation, which must be completed by
+     * {@link Selection#succeeded(long)}, {@link Selection#failed()} or {@link Selection#release()}.
+     */
+    public Selection select() {
+        if (endpoints.length == 1) {
+            return endpoints[0].acquire();
+        }
+        long now = System.nanoTime();
+        int start = Math.floorMod(next.getAndIncrement(), endpoints.length);
+        Endpoint selected = null;
+        for (int i = 0; i < endpoints.length; i++) {
+            Endpoint endpoint = endpoints[(start + i) % endpoints.length];
+            if (endpoint.isEjected()) {
+                if (endpoint.tryProbe(now)) {
+                    return endpoint.acquireProbe();
+                }
+                continue;
+            }
+            if (strategy == Strategy.ROUND_ROBIN) {
+                return endpoint.acquire();
+            }
+            if (selected == null || endpoint.outstanding.get() < selected.outstanding.get()) {
+                selected = endpoint;
+            }
+        }
+        if (selected == null) {
+            selected = endpoints[0];
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.ejectedUntil - selected.ejectedUntil < 0) {
+                    selected = endpoint;
+                }
+            }
+        }
+        return selected.acquire();
+    }
+
+    /**
+     * Selects the endpoint for an invocation with the given routing key: the owner of the first
+     * virtual node at or after the hash of the key that is available, or due for a probe.
+     *
+     * @param key the hash of the routing key, or <code>null</code> to select as usual
+     */
+    public Selection select(HashCode key) {
+        if (key == null || endpoints.length == 1) {
+            return select();
+        }
+        int start = Arrays.binarySearch(ring, key.asLong());
+        if (start < 0) {
+            start = -start - 1;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < ring.length; i++) {
+            Endpoint endpoint = ringOwners[(start + i) % ring.length];
+            if (!endpoint.isEjected()) {
+                return endpoint.acquire();
+            }
+            if (endpoint.tryProbe(now)) {
+                return endpoint.acquireProbe();
+            }
+        }
+        return select();
+    }
+
+    /**
+     * Selects the endpoint for a hedged invocation, other than the one it has been sent to first
+     * unless no other endpoint is available: the next one on the ring for an invocation with a
+     * routing key, otherwise the one with the fewest invocations in progress. Ejected endpoints
+     * are not probed by hedged invocations.
+     *
+     * @param key      the hash of the routing key, or <code>null</code> if there is none
+     * @param excluded the selection the invocation has been sent with first
+     */
+    public Selection selectOther(HashCode key, Selection excluded) {
+        Endpoint selected = null;
+        if (key != null) {
+            int start = Arrays.binarySearch(ring, key.asLong());
+            if (start < 0) {
+                start = -start - 1;
+            }
+            for (int i = 0; i < ring.length && selected == null; i++) {
+                Endpoint endpoint = ringOwners[(start + i) % ring.length];
+                if (endpoint != excluded.endpoint && !endpoint.isEjected()) {
+                    selected = endpoint;
+                }
+            }
+        } else {
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint != excluded.endpoint && !endpoint.isEjected() &&
+                        (selected == null || endpoint.outstanding.get() < selected.outstanding.get())) {
+                    selected = endpoint;
+                }
+            }
+        }
+        return (selected != null ? selected : excluded.endpoint).acquire();
+    }
+
+    /**
+     * @return the endpoints, in the configured order
+     */
+    public List<Endpoint> getEndpoints() {
+        return List.of(endpoints);
+    }
+
+    public enum Strategy {
+
+        /**
+         * Selects the endpoints in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Selects the endpoint with the fewest invocations in progress, taking turns on ties.
+         */
+        LEAST_OUTSTANDING;
+
+        /**
+         * @return the strategy with the given name, e.g. <code>round-robin</code> or <code>LEAST_OUTSTANDING</code>
+         */
+        public static Strategy forName(String name) {
+            return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * An endpoint selected for an invocation, by which the invocation is completed. Only the
+     * selection that probes an ejected endpoint decides whether it is restored or ejected again.
+     */
+    public static final class Selection {
+
+        private final Endpoint endpoint;
+        private final boolean probe;
+
+        private Selection(Endpoint endpoint, boolean probe) {
+            this.endpoint = endpoint;
+            this.probe = probe;
+        }
+
+        public Endpoint getEndpoint() {
+            return endpoint;
+        }
+
+        public String getServiceUrl() {
+            return endpoint.serviceUrl;
+        }
+
+        /**
+         * @return whether the invocation probes the endpoint, which is ejected
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+
+        /**
+         * Completes an invocation that received a response, counting it as failure if it was too slow.
+         *
+         * @param nanos the time the invocation took
+         */
+        public void succeeded(long nanos) {
+            endpoint.succeeded(nanos, probe);
+        }
+
+        /**
+         * Completes an invocation that failed, ejecting the endpoint if it failed too often.
+         */
+        public void failed() {
+            endpoint.failed(probe);
+        }
+
+        /**
+         * Completes an invocation without judging the endpoint, e.g. because it was cancelled.
+         */
+        public void release() {
+            endpoint.release(probe);
+        }
+
+        @Override
+        public String toString() {
+            return probe ? endpoint + " (probe)" : endpoint.toString();
+        }
+    }
+
+    /**
+     * An endpoint of the service, tracking its invocations in progress and its health.
+     */
+    public class Endpoint {
+
+        private final String serviceUrl;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private volatile boolean ejected;
+        private volatile long ejectedUntil;
+        private int ejections;
+        private volatile boolean stringRefAccepted;
+        private volatile ContentCoding requestCoding;
+        private final Selection selection = new Selection(this, false);
+
+        Endpoint(String serviceUrl) {
+            this.serviceUrl = serviceUrl;
+        }
+
+        public String getServiceUrl() {
+            return serviceUrl;
+        }
+
+        /**
+         * @return the number of invocations in progress
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * @return whether the endpoint is ejected, including while it is probed
+         */
+        public boolean isEjected() {
+            return ejected;
+        }
+
+        /**
+         * @return whether the server at this endpoint has shown to understand CBOR string references
+         */
+        public boolean isStringRefAccepted() {
+            return stringRefAccepted;
+        }
+
+        void setStringRefAccepted(boolean stringRefAccepted) {
+            this.stringRefAccepted = stringRefAccepted;
+        }
+
+        /**
+         * @return the coding to compress requests to this endpoint with, or <code>null</code>
+         * if the server has not advertised a coding it accepts yet
+         */
+        public ContentCoding getRequestCoding() {
+            return requestCoding;
+        }
+
+        void setRequestCoding(ContentCoding requestCoding) {
+            this.requestCoding = requestCoding;
+        }
+
+        Selection acquire() {
+            outstanding.incrementAndGet();
+            return selection;
+        }
+
+        Selection acquireProbe() {
+            outstanding.incrementAndGet();
+            return new Selection(this, true);
+        }
+
+        /**
+         * Lets a single invocation through once the ejection time has elapsed.
+         */
+        boolean tryProbe(long now) {
+            return now - ejectedUntil >= 0 && probing.compareAndSet(false, true);
+        }
+
+        private void succeeded(long nanos, boolean probe) {
+            if (slowThresholdNanos > 0 && nanos > slowThresholdNanos) {
+                failed(probe);
+                return;
+            }
+            outstanding.decrementAndGet();
+            failures.set(0);
+            if (probe) {
+                synchronized (this) {
+                    if (ejected) {
+                        logger.info("Restoring endpoint {}", serviceUrl);
+                        ejected = false;
+                        ejections = 0;
+                        probing.set(false);
+                    }
+                }
+            }
+        }
+
+        private void failed(boolean probe) {
+            outstanding.decrementAndGet();
+            if (endpoints.length == 1) {
+                return;
+            }
+            if (probe || failures.incrementAndGet() >= maxFailures) {
+                eject(probe);
+            }
+        }
+
+        private void release(boolean probe) {
+            outstanding.decrementAndGet();
+            if (probe) {
+                probing.set(false);
+            }
+        }
+
+        /**
+         * Ejects the endpoint, or ejects it again if its probe failed. Other invocations that were
+         * in progress when it was ejected do not extend the ejection.
+         */
+        private synchronized void eject(boolean probe) {
+            if (ejected && !probe) {
+                return;
+            }
+            long duration = ejectionNanos * Math.min(1L << Math.min(ejections, 30), MAX_EJECTION_FACTOR);
+            ejections++;
+            ejectedUntil = System.nanoTime() + duration;
+            ejected = true;
+            failures.set(0);
+            probing.set(false);
+            logger.warn("Ejecting endpoint {} for {} ms", serviceUrl, TimeUnit.NANOSECONDS.toMillis(duration));
+        }
+
+        @Override
+        public String toString() {
+            return serviceUrl;
+        }
+    }
+}
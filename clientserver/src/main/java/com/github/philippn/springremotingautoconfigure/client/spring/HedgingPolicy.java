@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Hedges invocations of idempotent methods: if an invocation has not been answered within the
+ * hedging delay, a second attempt is sent and the first answer is used, cancelling the other attempt.
+ * <p>The delay is either fixed, or the given percentile of the latencies recently observed for the
+ * method. Each invocation adds the budget, e.g. 0.1, to a balance that each hedge draws a whole
+ * attempt from, so that hedging adds at most that fraction of extra attempts, with a burst of at
+ * most {@value #MAX_BURST} attempts once the balance is saved up.
+ * <p>An attempt failing with an {@link IOException}, or rejected by an overloaded server, while
+ * the other one is still in progress is ignored. Any other answer, including an exception thrown
+ * by the service, is used.
+ *
+ * @author Philipp Nanz
+ */
+class HedgingPolicy {
+
+    private static final int MAX_BURST = 10;
+    private static final long ATTEMPT = 1000;
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 32;
+    private static final int ESTIMATE_INTERVAL = 16;
+
+    private final long delayNanos;
+    private final double percentile;
+    private final long deposit;
+    private final AtomicLong balance = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final Map<Method, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * @param delay      the time in milliseconds to wait before hedging, or until enough latencies
+     *                   have been observed if a percentile is given
+     * @param percentile the percentile of the observed latencies to wait before hedging, e.g. 95,
+     *                   or 0 to always wait the fixed delay
+     * @param budget     the number of hedges allowed per invocation, e.g. 0.1
+     */
+    HedgingPolicy(long delay, double percentile, double budget) {
+        if (percentile < 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Hedging percentile must be at least 0 and below 100: " + percentile);
+        }
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delay);
+        this.percentile = percentile;
+        this.deposit = Math.round(Math.max(budget, 0) * ATTEMPT);
+    }
+
+    /**
+     * Sends an invocation, hedging it if it has not been answered in time and the budget allows.
+     *
+     * @param method  the method invoked
+     * @param primary sends the first attempt
+     * @param backup  sends the hedged attempt, e.g. to another endpoint
+     */
+    <T> CompletableFuture<T> hedge(Method method, Supplier<CompletableFuture<T>> primary,
+                                   Supplier<CompletableFuture<T>> backup) {
+        balance.getAndUpdate(value -> Math.min(value + deposit, MAX_BURST * ATTEMPT));
+        Hedge<T> hedge = new Hedge<>(method);
+        hedge.attempt(0, primary);
+        CompletableFuture.delayedExecutor(getDelay(method), TimeUnit.NANOSECONDS).execute(() -> {
+            if (hedge.open.compareAndSet(true, false)) {
+                if (!hedge.result.isDone() && tryWithdraw()) {
+                    hedges.incrementAndGet();
+                    hedge.attempt(1, backup);
+                } else {
+                    hedge.abandon(null);
+                }
+            }
+        });
+        return hedge.result;
+    }
+
+    /**
+     * @return the time in nanoseconds to wait before hedging an invocation of the given method
+     */
+    long getDelay(Method method) {
+        if (percentile > 0) {
+            LatencyWindow window = latencies.get(method);
+            if (window != null && window.estimate >= 0) {
+                return window.estimate;
+            }
+        }
+        return delayNanos;
+    }
+
+    /**
+     * @return the number of invocations hedged so far
+     */
+    long getHedges() {
+        return hedges.get();
+    }
+
+    private boolean tryWithdraw() {
+        long value;
+        do {
+            value = balance.get();
+            if (value < ATTEMPT) {
+                return false;
+            }
+        } while (!balance.compareAndSet(value, value - ATTEMPT));
+        return true;
+    }
+
+    private void record(Method method, long nanos) {
+        if (percentile > 0) {
+            latencies.computeIfAbsent(method, m -> new LatencyWindow()).record(nanos, percentile);
+        }
+    }
+
+    private static boolean isFailedAttempt(Throwable exception) {
+        Throwable cause = exception instanceof CompletionException && exception.getCause() != null ?
+                exception.getCause() : exception;
+        return cause instanceof IOException || cause instanceof ServiceOverloadedException;
+    }
+
+    /**
+     * A single hedged invocation. It completes with the first answer, or with the last failure
+     * once all attempts have failed and no further attempt will be sent.
+     */
+    private final class Hedge<T> {
+
+        final Method method;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicBoolean open = new AtomicBoolean(true);
+        final AtomicInteger remaining = new AtomicInteger(2);
+        final AtomicReferenceArray<CompletableFuture<T>> attempts = new AtomicReferenceArray<>(2);
+
+        Hedge(Method method) {
+            this.method = method;
+            result.whenComplete((value, exception) -> cancelAttempts());
+        }
+
+        void attempt(int index, Supplier<CompletableFuture<T>> sender) {
+            long startTime = System.nanoTime();
+            CompletableFuture<T> attempt = send(sender);
+            attempts.set(index, attempt);
+            if (result.isDone()) {
+                attempt.cancel(true);
+                return;
+            }
+            attempt.whenComplete((value, exception) -> {
+                if (exception == null) {
+                    record(method, System.nanoTime() - startTime);
+                    result.complete(value);
+                } else if (attempt.isCancelled() || !isFailedAttempt(exception)) {
+                    result.completeExceptionally(exception instanceof CompletionException &&
+                            exception.getCause() != null ? exception.getCause() : exception);
+                } else {
+                    // No further attempt once the first one has failed before the hedge was due
+                    if (open.compareAndSet(true, false)) {
+                        remaining.decrementAndGet();
+                    }
+                    abandon(exception);
+                }
+            });
+        }
+
+        private CompletableFuture<T> send(Supplier<CompletableFuture<T>> sender) {
+            try {
+                return sender.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /**
+         * Gives up on an attempt, failing the invocation if it was the last one.
+         */
+        void abandon(Throwable exception) {
+            if (remaining.decrementAndGet() == 0 && exception != null) {
+                result.completeExceptionally(exception);
+            }
+        }
+
+        private void cancelAttempts() {
+            for (int i = 0; i < attempts.length(); i++) {
+                CompletableFuture<T> attempt = attempts.get(i);
+                if (attempt != null) {
+                    attempt.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * The latencies recently observed for a method, with an estimate of their percentile that is
+     * refreshed every {@value #ESTIMATE_INTERVAL} samples.
+     */
+    private static final class LatencyWindow {
+
+        final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+        final AtomicLong count = new AtomicLong();
+        volatile long estimate = -1;
+
+        void record(long nanos, double percentile) {
+            long n = count.getAndIncrement();
+            samples.set((int) (n % WINDOW_SIZE), nanos);
+            if (n + 1 >= MIN_SAMPLES && (n + 1) % ESTIMATE_INTERVAL == 0) {
+                int size = (int) Math.min(n + 1, WINDOW_SIZE);
+                long[] sorted = new long[size];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = samples.get(i);
+                }
+                Arrays.sort(sorted);
+                estimate = sorted[Math.min((int) Math.ceil(percentile / 100 * size) - 1, size - 1)];
+            }
+        }
+    }
+}
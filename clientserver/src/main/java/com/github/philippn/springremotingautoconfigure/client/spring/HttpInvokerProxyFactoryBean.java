@@ -15,32 +15,150 @@
  */
 package com.github.philippn.springremotingautoconfigure.client.spring;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteCacheable;
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
 import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.cbor.SchemaFingerprint;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationMetrics;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationPhase;
+import com.github.philippn.springremotingautoconfigure.metrics.RemotingMetrics;
+import com.github.philippn.springremotingautoconfigure.util.BufferPool;
+import com.github.philippn.springremotingautoconfigure.util.CborMediaType;
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineContext;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineExceededException;
+import com.github.philippn.springremotingautoconfigure.util.ExceptionRegistry;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.github.philippn.springremotingautoconfigure.util.ServiceSchema;
+import com.github.philippn.springremotingautoconfigure.util.VirtualThreads;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.nio.support.BasicResponseConsumer;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.context.EnvironmentAware;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.env.Environment;
 import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
-public class HttpInvokerProxyFactoryBean implements EnvironmentAware, FactoryBean<Object>, InitializingBean, MethodInterceptor {
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class HttpInvokerProxyFactoryBean implements BeanFactoryAware, DisposableBean, EnvironmentAware, FactoryBean<Object>, InitializingBean, MethodInterceptor {
+
+    static final Logger logger = LoggerFactory.getLogger(HttpInvokerProxyFactoryBean.class);
+
+    private static final int DEFAULT_REQUEST_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_REQUEST_BUFFERS = 16;
+    private static final long DEFAULT_BATCH_WINDOW = 2;
+    private static final int DEFAULT_BATCH_MAX_SIZE = 64;
+    private static final int DEFAULT_MAX_FAILURES = 3;
+    private static final long DEFAULT_EJECTION_TIME = 10_000;
+    private static final long DEFAULT_HEDGING_DELAY = 50;
+    private static final double DEFAULT_HEDGING_BUDGET = 0.1;
+    private static final ContentType CBOR = ContentType.parse(CborMediaType.CBOR);
+    private static final ContentType CBOR_STRINGREF = ContentType.parse(CborMediaType.CBOR_STRINGREF);
+    private static final String ACCEPT_STRINGREF = CborMediaType.CBOR_STRINGREF + ", " + CborMediaType.CBOR;
 
     private Object serviceProxy;
     private Class<?> serviceInterface;
     private String serviceUrl;
     private String absoluteServiceUrl;
+    private EndpointBalancer balancer;
     private Environment environment;
+    private BeanFactory beanFactory;
     private CloseableHttpClient httpClient;
+    private RemotingHttpClientFactoryBean httpClientFactory;
+    private boolean ownHttpClient;
+    private volatile CloseableHttpAsyncClient asyncHttpClient;
+    private CloseableHttpAsyncClient http2Client;
     private CborMapperFactory cborMapperFactory;
     private CBORMapper cborMapper;
     private CBORFactory cborFactory;
+    private CBORFactory stringRefFactory;
+    private BufferPool requestBufferPool;
+    private boolean repeatableRequests;
+    private boolean handshake;
+    private volatile boolean handshakeDone;
+    private final ReentrantLock handshakeLock = new ReentrantLock();
+    private volatile Map<String, Integer> methodIds;
+    private volatile String methodTableHash;
+    private InvocationBatcher batcher;
+    private HedgingPolicy hedging;
+    private boolean virtualThreads;
+    private ExecutorService virtualThreadExecutor;
+    private ExecutorService uploadExecutor;
+    private int compressionThreshold;
+    private ContentCoding preferredCoding;
+    private String acceptEncoding;
+    private String schemaFingerprint;
+    private ExceptionRegistry exceptionRegistry;
+    private Map<Method, Cache<ByteBuffer, CachedResult>> resultCaches = Map.of();
+    private RemotingMetrics metrics;
+    private final Map<Method, MethodInvocationDescriptor> descriptors = new ConcurrentHashMap<>();
 
     @Override
     public void afterPropertiesSet() {
@@ -49,31 +167,1046 @@ public class HttpInvokerProxyFactoryBean implements EnvironmentAware, FactoryBea
         }
         Class<?> ifc = getServiceInterface();
         Assert.notNull(ifc, "Property 'serviceInterface' is required");
-        this.cborMapper = cborMapperFactory.newMapper();
-        this.cborFactory = new CBORFactory(cborMapper);
+        RemoteExport definition = AnnotationUtils.findAnnotation(ifc, RemoteExport.class);
+        if (definition != null && definition.compact()) {
+            this.cborMapper = cborMapperFactory.newCompactMapper();
+            this.schemaFingerprint = SchemaFingerprint.compute(cborMapper, ifc);
+        } else {
+            this.cborMapper = cborMapperFactory.newMapper();
+        }
+        this.cborFactory = CborMapperFactory.newFactory(cborMapper, false);
+        this.exceptionRegistry = new ExceptionRegistry(ifc, cborMapper);
+        if (getServiceProperty("stringRefs", Boolean.class, false)) {
+            this.stringRefFactory = CborMapperFactory.newFactory(cborMapper, true);
+        }
         this.serviceProxy = new ProxyFactory(ifc, this).getProxy();
-        this.absoluteServiceUrl = buildServiceUrl();
+        List<String> serviceUrls = buildServiceUrls();
+        this.absoluteServiceUrl = serviceUrls.get(0);
+        this.balancer = new EndpointBalancer(serviceUrls,
+                EndpointBalancer.Strategy.forName(getServiceProperty("balancer.strategy", String.class, "round-robin")),
+                getServiceProperty("balancer.maxFailures", Integer.class, DEFAULT_MAX_FAILURES),
+                getServiceProperty("balancer.slowThreshold", Long.class, 0L),
+                getServiceProperty("balancer.ejectionTime", Long.class, DEFAULT_EJECTION_TIME),
+                getServiceProperty("balancer.virtualNodes", Integer.class, EndpointBalancer.DEFAULT_VIRTUAL_NODES));
+        this.requestBufferPool = new BufferPool(getServiceProperty("requestBufferSize",
+                Integer.class, DEFAULT_REQUEST_BUFFER_SIZE), MAX_POOLED_REQUEST_BUFFERS);
+        this.repeatableRequests = getServiceProperty("repeatableRequests", Boolean.class, false);
+        this.handshake = getServiceProperty("handshake", Boolean.class, false);
+        if (getServiceProperty("batching.enabled", Boolean.class, false)) {
+            this.batcher = new InvocationBatcher(
+                    getServiceProperty("batching.window", Long.class, DEFAULT_BATCH_WINDOW),
+                    getServiceProperty("batching.maxSize", Integer.class, DEFAULT_BATCH_MAX_SIZE),
+                    this::executeBatch);
+        }
+        if (getServiceProperty("hedging.enabled", Boolean.class, false)) {
+            this.hedging = new HedgingPolicy(
+                    getServiceProperty("hedging.delay", Long.class, DEFAULT_HEDGING_DELAY),
+                    getServiceProperty("hedging.percentile", Double.class, 0d),
+                    getServiceProperty("hedging.budget", Double.class, DEFAULT_HEDGING_BUDGET));
+        }
+        this.compressionThreshold = getServiceProperty("compression.threshold", Integer.class, -1);
+        String coding = getServiceProperty("compression.coding", String.class, ContentCoding.GZIP.getToken());
+        this.preferredCoding = ContentCoding.forToken(coding);
+        if (preferredCoding == null) {
+            throw new IllegalArgumentException("Unsupported content coding: " + coding);
+        }
+        this.acceptEncoding = ContentCoding.acceptEncoding(preferredCoding);
+        this.resultCaches = buildResultCaches(ifc);
+        if (http2Client == null && getServiceProperty("http2.enabled", Boolean.class, false)) {
+            Assert.notNull(beanFactory, "A BeanFactory is required to look up the HTTP/2 client");
+            this.http2Client = beanFactory.getBean(HttpInvokerProxyFactoryBeanRegistrar.HTTP2_CLIENT_BEAN_NAME,
+                    CloseableHttpAsyncClient.class);
+        }
+        if (httpClient == null && http2Client == null) {
+            Assert.notNull(beanFactory, "A BeanFactory is required to look up the HTTP client");
+            this.httpClient = resolveHttpClient(ifc);
+        }
+        if (virtualThreads || getServiceProperty("virtualThreads", Boolean.class, false)) {
+            this.virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        }
+        if (metrics == null) {
+            this.metrics = beanFactory != null ?
+                    RemotingMetrics.lookup(beanFactory, RemotingMetrics.CLIENT, ifc) : RemotingMetrics.NONE;
+        }
+    }
+
+    /**
+     * Resolves the HTTP client named by {@link RemoteExport#httpClient()}, a pooled client of this
+     * proxy's own if any <code>remote.services.&lt;SimpleName&gt;.http.*</code> property is set, the
+     * unique <code>CloseableHttpClient</code> bean of the application, or else the pooled client
+     * shared by all proxies.
+     */
+    private CloseableHttpClient resolveHttpClient(Class<?> ifc) {
+        RemoteExport definition = AnnotationUtils.findAnnotation(ifc, RemoteExport.class);
+        if (definition != null && !definition.httpClient().isEmpty()) {
+            return beanFactory.getBean(definition.httpClient(), CloseableHttpClient.class);
+        }
+        if (RemotingHttpClientFactoryBean.hasServiceProperties(environment, ifc)) {
+            RemotingHttpClientFactoryBean factory = new RemotingHttpClientFactoryBean();
+            factory.setEnvironment(environment);
+            factory.setBeanFactory(beanFactory);
+            factory.setServiceInterface(ifc);
+            factory.afterPropertiesSet();
+            this.httpClientFactory = factory;
+            this.ownHttpClient = true;
+            return factory.getObject();
+        }
+        // The provider only skips the shared client, which is no autowire candidate, if there are others
+        if (!(beanFactory instanceof ListableBeanFactory) || Arrays.stream(((ListableBeanFactory) beanFactory)
+                .getBeanNamesForType(CloseableHttpClient.class, true, false))
+                .anyMatch(name -> !HttpInvokerProxyFactoryBeanRegistrar.HTTP_CLIENT_BEAN_NAME.equals(name))) {
+            CloseableHttpClient client = beanFactory.getBeanProvider(CloseableHttpClient.class).getIfUnique();
+            if (client != null) {
+                return client;
+            }
+        }
+        this.httpClientFactory = beanFactory.getBean("&" + HttpInvokerProxyFactoryBeanRegistrar.HTTP_CLIENT_BEAN_NAME,
+                RemotingHttpClientFactoryBean.class);
+        return httpClientFactory.getObject();
+    }
+
+    @Override
+    public void destroy() {
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+        }
+        synchronized (this) {
+            if (uploadExecutor != null) {
+                uploadExecutor.shutdown();
+            }
+        }
+        if (ownHttpClient) {
+            httpClientFactory.destroy();
+        }
+    }
+
+    /**
+     * Builds a result cache for each {@link RemoteCacheable} method whose result can be cached.
+     */
+    private static Map<Method, Cache<ByteBuffer, CachedResult>> buildResultCaches(Class<?> ifc) {
+        Map<Method, Cache<ByteBuffer, CachedResult>> caches = new HashMap<>();
+        for (Method method : ifc.getMethods()) {
+            RemoteCacheable cacheable = AnnotationUtils.findAnnotation(method, RemoteCacheable.class);
+            if (cacheable == null || void.class.equals(method.getReturnType()) || Void.class.equals(method.getReturnType()) ||
+                    RemotingUtils.isAsynchronous(method) || RemotingUtils.isStreaming(method) ||
+                    RemotingUtils.hasStreamingArgument(method)) {
+                continue;
+            }
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                    .expireAfterWrite(cacheable.ttl(), cacheable.timeUnit())
+                    .recordStats();
+            if (cacheable.maxBytes() > 0) {
+                caches.put(method, builder.maximumWeight(cacheable.maxBytes())
+                        .weigher((ByteBuffer key, CachedResult result) -> result.size)
+                        .build());
+            } else {
+                caches.put(method, builder.maximumSize(cacheable.maxEntries()).build());
+            }
+        }
+        return Map.copyOf(caches);
+    }
+
+    protected <T> T getServiceProperty(String key, Class<T> targetType, T defaultValue) {
+        return RemotingUtils.getServiceProperty(environment, serviceInterface, key, targetType, defaultValue);
+    }
+
+    /**
+     * Builds the service URLs of all endpoints of the service, listed by the property
+     * <code>remote.services.&lt;InterfaceName&gt;.endpoints</code> as comma-separated base URLs,
+     * or else the single service URL built by {@link #buildServiceUrl()}.
+     */
+    protected List<String> buildServiceUrls() {
+        String endpoints = getServiceProperty("endpoints", String.class, null);
+        if (endpoints == null || endpoints.isBlank()) {
+            return List.of(buildServiceUrl());
+        }
+        return Arrays.stream(endpoints.split(",")).map(String::trim).filter(baseUrl -> !baseUrl.isEmpty())
+                .map(this::buildServiceUrl).toList();
     }
 
     protected String buildServiceUrl() {
-        String baseUrl = environment.getProperty("remote.baseUrl", "http://localhost:8080");
+        return buildServiceUrl(getServiceProperty("baseUrl", String.class, "http://localhost:8080"));
+    }
+
+    private String buildServiceUrl(String baseUrl) {
         if (baseUrl.endsWith("/")) {
             baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
         }
         return baseUrl + serviceUrl;
     }
 
+    /**
+     * Dispatches an invocation, recording its metrics. The call of an asynchronous method is
+     * recorded once its result completes, that of a streaming method once its result is open.
+     * <p>The invocation is dispatched with its deadline, if any, as the deadline of the thread.
+     * <p>If the server rejects an invocation by ID because its method table differs from the one
+     * fetched in the handshake, the invocation is dispatched once more by name, unless it has a
+     * streaming argument, which has been consumed already.
+     */
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
-        HttpPost post = new HttpPost(absoluteServiceUrl);
-        post.setEntity(new MethodInvocationEntity(invocation, cborFactory));
-        try {
-            return httpClient.execute(post, new MethodInvocationResponseHandler(invocation, cborFactory, cborMapper.getTypeFactory()));
+        MethodInvocationDescriptor descriptor = getDescriptor(invocation.getMethod());
+        InvocationMetrics metrics = descriptor.getMetrics();
+        long startTime = System.nanoTime();
+        Long deadline = descriptor.resolveDeadline(DeadlineContext.getDeadline());
+        Object result;
+        DeadlineContext.Scope scope = DeadlineContext.withDeadline(deadline);
+        try (scope) {
+            if (DeadlineContext.isExpired(deadline)) {
+                throw new DeadlineExceededException("Deadline passed before invocation of " + invocation.getMethod());
+            }
+            try {
+                result = dispatch(descriptor, invocation);
+            } catch (MethodTableMismatchException e) {
+                if (descriptor.hasStreamingArgument()) {
+                    throw e;
+                }
+                result = dispatch(getDescriptor(invocation.getMethod()), invocation);
+            }
+            if (handshake && descriptor.isAsynchronous() && !descriptor.hasStreamingArgument() &&
+                    result instanceof CompletableFuture) {
+                result = redispatchOnMismatch((CompletableFuture<?>) result, invocation, deadline);
+            }
+        } catch (Throwable t) {
+            metrics.recordCall(System.nanoTime() - startTime, t);
+            throw t;
+        }
+        if (descriptor.isAsynchronous() && result instanceof CompletableFuture) {
+            if (metrics != InvocationMetrics.NONE) {
+                ((CompletableFuture<?>) result).whenComplete((value, exception) -> metrics.recordCall(
+                        System.nanoTime() - startTime, exception instanceof CompletionException &&
+                                exception.getCause() != null ? exception.getCause() : exception));
+            }
+        } else {
+            metrics.recordCall(System.nanoTime() - startTime, null);
+        }
+        return result;
+    }
+
+    /**
+     * Dispatches an asynchronous invocation once more by name if its result fails because the
+     * method table of the server differs, see {@link #invoke(MethodInvocation)}. Cancelling the
+     * returned future cancels the first invocation.
+     */
+    private CompletableFuture<Object> redispatchOnMismatch(CompletableFuture<?> result, MethodInvocation invocation,
+                                                           Long deadline) {
+        CompletableFuture<Object> redispatched = result.thenApply(value -> (Object) value).exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof MethodTableMismatchException)) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            // Completed on another thread, which lacks the deadline of the caller
+            DeadlineContext.Scope scope = DeadlineContext.withDeadline(deadline);
+            try (scope) {
+                return ((CompletableFuture<?>) dispatch(getDescriptor(invocation.getMethod()), invocation))
+                        .thenApply(value -> (Object) value);
+            } catch (Throwable t) {
+                return CompletableFuture.failedFuture(t);
+            }
+        });
+        redispatched.whenComplete((value, exception) -> {
+            if (redispatched.isCancelled()) {
+                result.cancel(true);
+            }
+        });
+        return redispatched;
+    }
+
+    private Object dispatch(MethodInvocationDescriptor descriptor, MethodInvocation invocation) throws Throwable {
+        if (descriptor.isAsynchronous()) {
+            if (virtualThreadExecutor != null) {
+                return executeOnVirtualThread(descriptor, invocation.getArguments());
+            }
+            return executeAsync(descriptor, invocation.getArguments());
+        }
+        if (descriptor.isStreaming()) {
+            return executeStreaming(descriptor, invocation.getArguments());
+        }
+        if (!resultCaches.isEmpty()) {
+            Cache<ByteBuffer, CachedResult> cache = resultCaches.get(invocation.getMethod());
+            if (cache != null) {
+                return executeCached(descriptor, invocation.getArguments(), cache);
+            }
+        }
+        if (batcher != null && !descriptor.hasStreamingArgument() && !descriptor.hasRoutingKey() &&
+                !isHedged(descriptor) && DeadlineContext.getDeadline() == null) {
+            return batcher.invoke(descriptor, invocation.getArguments());
+        }
+        return execute(descriptor, invocation.getArguments());
+    }
+
+    protected Object execute(MethodInvocationDescriptor descriptor, Object[] arguments) throws Throwable {
+        if (http2Client != null || isHedged(descriptor)) {
+            return await(executeAsync(descriptor, arguments));
+        }
+        InvocationMetrics metrics = descriptor.getMetrics();
+        EndpointBalancer.Selection endpoint = balancer.select(descriptor.hashRoutingKey(arguments));
+        long encodeStart = System.nanoTime();
+        try (MethodInvocationEntity entity = encode(endpoint, descriptor, arguments)) {
+            long sendStart = System.nanoTime();
+            // Unbuffered invocations are encoded while they are sent
+            if (entity.getContentLength() >= 0) {
+                metrics.recordPhase(InvocationPhase.ENCODE, sendStart - encodeStart);
+                metrics.recordRequestSize(entity.getContentLength());
+            }
+            return post(endpoint, compress(entity, endpoint), response -> {
+                metrics.recordPhase(InvocationPhase.WAIT, System.nanoTime() - sendStart);
+                return descriptor.getResponseHandler().handleResponse(response);
+            });
         } catch (MethodInvocationException e) {
             throw e.getCause();
         }
     }
 
+    /**
+     * Serves an invocation of a {@link RemoteCacheable} method from its result cache, keyed by the
+     * encoded invocation. Concurrent misses for the same arguments share a single request, and
+     * exceptions are not cached. Invocations too large to be buffered bypass the cache.
+     * <p>The key is encoded without string references, which depend on the endpoint, so that
+     * it does not change with the endpoint the invocation is sent to.
+     */
+    private Object executeCached(MethodInvocationDescriptor descriptor, Object[] arguments,
+                                 Cache<ByteBuffer, CachedResult> cache) throws Throwable {
+        try (MethodInvocationEntity entity = new MethodInvocationEntity(descriptor, arguments,
+                cborFactory, requestBufferPool, repeatableRequests)) {
+            if (entity.getContentLength() < 0) {
+                return execute(descriptor, arguments);
+            }
+            byte[] content;
+            try (InputStream input = entity.getContent()) {
+                content = input.readAllBytes();
+            }
+            HashCode routingKey = descriptor.hashRoutingKey(arguments);
+            return cache.get(ByteBuffer.wrap(content), () -> load(descriptor, entity, content, routingKey)).value;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof MethodInvocationException ? cause.getCause() : cause;
+        }
+    }
+
+    /**
+     * Sends an invocation whose result is to be cached, receiving the response as a whole to weigh it.
+     */
+    private CachedResult load(MethodInvocationDescriptor descriptor, MethodInvocationEntity entity,
+                              byte[] content, HashCode routingKey) throws Exception {
+        if (http2Client != null || isHedged(descriptor)) {
+            try {
+                return exchange(descriptor, content, entity.isStringRef(), routingKey,
+                        (code, body) -> new CachedResult(descriptor.getResponseHandler().handleResponse(code, body),
+                                content.length + body.length)).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        EndpointBalancer.Selection endpoint = balancer.select(routingKey);
+        return post(endpoint, compress(entity, endpoint), response -> {
+            MethodInvocationResponseHandler.checkStatus(response.getCode());
+            byte[] body;
+            try (InputStream input = ContentCoding.decode(
+                    response.getEntity().getContentEncoding(), response.getEntity().getContent())) {
+                body = input.readAllBytes();
+            }
+            return new CachedResult(descriptor.getResponseHandler().handleResponse(response.getCode(), body),
+                    content.length + body.length);
+        });
+    }
+
+    /**
+     * Sends an invocation of a method returning a {@link java.util.stream.Stream}, {@link java.util.Iterator}
+     * or {@link Iterable}, returning its elements while they are received. The response stays open until
+     * all elements have been read or the returned stream is closed.
+     * <p>Over HTTP/2, the elements are received as a whole before they are returned.
+     */
+    protected Object executeStreaming(MethodInvocationDescriptor descriptor, Object[] arguments) throws Throwable {
+        if (http2Client != null) {
+            return execute(descriptor, arguments);
+        }
+        EndpointBalancer.Selection endpoint = balancer.select(descriptor.hashRoutingKey(arguments));
+        try (MethodInvocationEntity entity = encode(endpoint, descriptor, arguments)) {
+            HttpPost post = newPost(endpoint);
+            post.setEntity(compress(entity, endpoint));
+            long startTime = System.nanoTime();
+            ClassicHttpResponse response;
+            try {
+                response = httpClient.executeOpen(null, post, null);
+            } catch (IOException e) {
+                handleFailure(endpoint, e);
+                throw e;
+            } catch (RuntimeException e) {
+                endpoint.release();
+                throw e;
+            }
+            complete(endpoint, response.getCode(), startTime);
+            negotiate(endpoint, response);
+            try {
+                checkMethodTable(response);
+            } catch (RuntimeException e) {
+                response.close();
+                throw e;
+            }
+            return descriptor.getResponseHandler().openStreamingResult(post, response);
+        } catch (MethodInvocationException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sends an invocation of a method returning a {@link java.util.concurrent.CompletionStage}
+     * using the asynchronous HTTP client, without blocking the calling thread.
+     * <p>The response is received as a whole before it is decoded, since CBOR cannot be parsed
+     * incrementally from partial input. It is decoded off the I/O threads of the client, see
+     * {@link #completeAsync(CompletableFuture, Runnable)}.
+     */
+    protected CompletableFuture<Object> executeAsync(MethodInvocationDescriptor descriptor, Object[] arguments) {
+        if (descriptor.hasStreamingArgument()) {
+            return executeUpload(descriptor, arguments);
+        }
+        InvocationMetrics metrics = descriptor.getMetrics();
+        HashCode routingKey;
+        try {
+            routingKey = descriptor.hashRoutingKey(arguments);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // A hedged invocation may be sent to two endpoints, so it is encoded without string references
+        EndpointBalancer.Selection endpoint = isHedged(descriptor) ? null : balancer.select(routingKey);
+        long encodeStart = System.nanoTime();
+        byte[] content;
+        boolean stringRef;
+        try (MethodInvocationEntity entity = new MethodInvocationEntity(descriptor, arguments,
+                endpoint != null ? requestFactory(endpoint) : cborFactory, requestBufferPool, false)) {
+            content = toByteArray(entity);
+            stringRef = entity.isStringRef();
+        } catch (IOException | RuntimeException e) {
+            if (endpoint != null) {
+                endpoint.release();
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+        long sendStart = System.nanoTime();
+        metrics.recordPhase(InvocationPhase.ENCODE, sendStart - encodeStart);
+        metrics.recordRequestSize(content.length);
+        ResponseReader<Object> reader = (code, body) -> {
+            metrics.recordPhase(InvocationPhase.WAIT, System.nanoTime() - sendStart);
+            return descriptor.getResponseHandler().handleResponse(code, body);
+        };
+        return endpoint != null ? exchange(endpoint, content, stringRef, reader) :
+                exchange(descriptor, content, stringRef, routingKey, reader);
+    }
+
+    /**
+     * Sends an invocation with a streaming argument using the asynchronous HTTP client. Like with the
+     * classic client, the invocation is encoded while it is sent, reading the argument on the upload
+     * executor, see {@link #getUploadExecutor()}. Such invocations are never hedged.
+     */
+    private CompletableFuture<Object> executeUpload(MethodInvocationDescriptor descriptor, Object[] arguments) {
+        EndpointBalancer.Selection endpoint;
+        MethodInvocationEntity entity;
+        try {
+            endpoint = balancer.select(descriptor.hashRoutingKey(arguments));
+            entity = encode(endpoint, descriptor, arguments);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpEntity upload = compress(entity, endpoint);
+        long sendStart = System.nanoTime();
+        return exchange(endpoint,
+                new UploadEntityProducer(upload, getUploadExecutor()), upload.getContentEncoding(), (code, body) -> {
+                    descriptor.getMetrics().recordPhase(InvocationPhase.WAIT, System.nanoTime() - sendStart);
+                    return descriptor.getResponseHandler().handleResponse(code, body);
+                });
+    }
+
+    /**
+     * Returns the executor writing the invocations the asynchronous HTTP client uploads, which block
+     * while reading their streaming argument: the executor of virtual threads if enabled, or else a
+     * cached thread pool of this proxy, created on first use.
+     */
+    private synchronized Executor getUploadExecutor() {
+        if (virtualThreadExecutor != null) {
+            return virtualThreadExecutor;
+        }
+        if (uploadExecutor == null) {
+            uploadExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory(
+                    "remoting-upload-" + serviceInterface.getSimpleName() + "-"));
+        }
+        return uploadExecutor;
+    }
+
+    /**
+     * Posts an invocation of the given method to an endpoint selected by the balancer, hedging it
+     * on another endpoint if the method is idempotent and hedging is enabled. The content must not
+     * use string references, unless it is not hedged and its endpoint is known to understand them.
+     *
+     * @param routingKey the hash of the routing key of the invocation, or <code>null</code> if it has none
+     */
+    private <T> CompletableFuture<T> exchange(MethodInvocationDescriptor descriptor, byte[] content,
+                                              boolean stringRef, HashCode routingKey, ResponseReader<T> reader) {
+        if (!isHedged(descriptor)) {
+            return exchange(balancer.select(routingKey), content, stringRef, reader);
+        }
+        Long deadline = DeadlineContext.getDeadline();
+        EndpointBalancer.Selection endpoint = balancer.select(routingKey);
+        return hedging.hedge(descriptor.getMethod(), () -> exchange(endpoint, content, stringRef, reader), () -> {
+            // The hedge is sent from a timer thread, which lacks the deadline of the caller
+            DeadlineContext.Scope scope = DeadlineContext.withDeadline(deadline);
+            try (scope) {
+                return exchange(balancer.selectOther(routingKey, endpoint), content, stringRef, reader);
+            }
+        });
+    }
+
+    private boolean isHedged(MethodInvocationDescriptor descriptor) {
+        return hedging != null && descriptor.isIdempotent();
+    }
+
+    /**
+     * Posts the given content to the given endpoint using the HTTP/2 client if enabled, or the
+     * asynchronous HTTP client otherwise. Cancelling the returned future cancels the exchange.
+     *
+     * @param endpoint  the endpoint selected by the balancer, completed once the exchange completes
+     * @param stringRef whether the content uses CBOR string references
+     */
+    private <T> CompletableFuture<T> exchange(EndpointBalancer.Selection endpoint, byte[] content,
+                                              boolean stringRef, ResponseReader<T> reader) {
+        ContentCoding coding = endpoint.getEndpoint().getRequestCoding();
+        String contentEncoding = null;
+        if (coding != null && content.length >= compressionThreshold) {
+            try {
+                content = compress(content, coding);
+            } catch (IOException e) {
+                endpoint.release();
+                return CompletableFuture.failedFuture(e);
+            }
+            contentEncoding = coding.getToken();
+        }
+        return exchange(endpoint, AsyncEntityProducers.create(content, stringRef ? CBOR_STRINGREF : CBOR),
+                contentEncoding, reader);
+    }
+
+    /**
+     * Posts the given entity to the given endpoint, see {@link #exchange(EndpointBalancer.Selection, byte[],
+     * boolean, ResponseReader)}. If writing an {@link UploadEntityProducer} fails, so does the exchange.
+     *
+     * @param contentEncoding the content coding the entity is compressed with, or <code>null</code>
+     */
+    private <T> CompletableFuture<T> exchange(EndpointBalancer.Selection endpoint, AsyncEntityProducer entity,
+                                              String contentEncoding, ResponseReader<T> reader) {
+        CloseableHttpAsyncClient client;
+        try {
+            client = http2Client != null ? http2Client : getAsyncHttpClient();
+        } catch (RuntimeException e) {
+            endpoint.release();
+            throw e;
+        }
+        AsyncRequestBuilder request = AsyncRequestBuilder.post(endpoint.getServiceUrl())
+                .setHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        if (stringRefFactory != null) {
+            request.setHeader(HttpHeaders.ACCEPT, ACCEPT_STRINGREF);
+        }
+        if (schemaFingerprint != null) {
+            request.setHeader(SchemaFingerprint.HEADER_NAME, schemaFingerprint);
+        }
+        if (exceptionRegistry.getHash() != null) {
+            request.setHeader(ExceptionRegistry.HEADER_NAME, exceptionRegistry.getHash());
+        }
+        String tableHash = methodTableHash;
+        if (tableHash != null) {
+            request.setHeader(ServiceSchema.HEADER_NAME, tableHash);
+        }
+        Long deadline = DeadlineContext.getDeadline();
+        if (deadline != null) {
+            request.setHeader(DeadlineContext.HEADER_NAME, DeadlineContext.toHeader(deadline));
+        }
+        if (contentEncoding != null) {
+            request.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long startTime = System.nanoTime();
+        Future<?> exchange = client.execute(request.setEntity(entity).build(),
+                new BasicResponseConsumer<>(new BasicAsyncEntityConsumer()),
+                new FutureCallback<Message<HttpResponse, byte[]>>() {
+
+                    @Override
+                    public void completed(Message<HttpResponse, byte[]> response) {
+                        complete(endpoint, response.getHead().getCode(), startTime);
+                        completeAsync(result, () -> {
+                            try {
+                                negotiate(endpoint, response.getHead());
+                                checkMethodTable(response.getHead());
+                                result.complete(reader.read(response.getHead().getCode(),
+                                        decode(response.getHead(), response.getBody())));
+                            } catch (MethodInvocationException e) {
+                                result.completeExceptionally(e.getCause());
+                            } catch (Exception e) {
+                                result.completeExceptionally(e);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        endpoint.failed();
+                        completeAsync(result, () -> result.completeExceptionally(e));
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        endpoint.release();
+                        completeAsync(result, () -> result.cancel(false));
+                    }
+                });
+        if (deadline != null) {
+            // Completing the timer once the exchange completes cancels its timeout task
+            CompletableFuture<Void> timer = new CompletableFuture<Void>()
+                    .orTimeout(DeadlineContext.remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            timer.exceptionally(e -> {
+                result.completeExceptionally(new DeadlineExceededException(
+                        "Deadline passed while waiting for the response"));
+                return null;
+            });
+            result.whenComplete((value, exception) -> timer.complete(null));
+        }
+        if (entity instanceof UploadEntityProducer) {
+            ((UploadEntityProducer) entity).getFailure().exceptionally(e -> {
+                result.completeExceptionally(e);
+                return null;
+            });
+        }
+        result.whenComplete((value, exception) -> {
+            // Cancelled, past the deadline or failed to upload, no effect once the exchange has completed
+            if (exception != null) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Completes the future of an exchange on the executor of virtual threads if enabled, or the
+     * common pool otherwise, so that neither decoding the response nor the dependents of the future
+     * run on, and block, the I/O threads of the HTTP client that serve all other exchanges.
+     */
+    private void completeAsync(CompletableFuture<?> result, Runnable completion) {
+        try {
+            (virtualThreadExecutor != null ? virtualThreadExecutor : ForkJoinPool.commonPool()).execute(completion);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private <T> T post(EndpointBalancer.Selection endpoint, HttpEntity entity,
+                       HttpClientResponseHandler<T> handler) throws IOException {
+        HttpPost post = newPost(endpoint);
+        post.setEntity(entity);
+        return send(endpoint, post, handler);
+    }
+
+    /**
+     * Sends a request to an endpoint selected by the balancer, which is judged by the status
+     * of the response before the response is handled, or by the failure to receive one.
+     */
+    private <T> T send(EndpointBalancer.Selection endpoint, ClassicHttpRequest request,
+                       HttpClientResponseHandler<T> handler) throws IOException {
+        long startTime = System.nanoTime();
+        AtomicBoolean responded = new AtomicBoolean();
+        try {
+            return httpClient.execute(request, response -> {
+                responded.set(true);
+                complete(endpoint, response.getCode(), startTime);
+                negotiate(endpoint, response);
+                checkMethodTable(response);
+                return handler.handleResponse(response);
+            });
+        } catch (IOException e) {
+            handleFailure(responded.get() ? null : endpoint, e);
+            throw e;
+        } catch (RuntimeException e) {
+            if (!responded.get()) {
+                endpoint.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Judges the endpoint by a failure to receive its response, unless the deadline of the thread
+     * has passed meanwhile, in which case the failure is reported as {@link DeadlineExceededException}.
+     *
+     * @param endpoint the endpoint, or <code>null</code> if it has been judged by its response already
+     */
+    private static void handleFailure(EndpointBalancer.Selection endpoint, IOException e) {
+        boolean expired = DeadlineContext.isExpired(DeadlineContext.getDeadline());
+        if (endpoint != null) {
+            if (expired) {
+                endpoint.release();
+            } else {
+                endpoint.failed();
+            }
+        }
+        if (expired) {
+            DeadlineExceededException exception = new DeadlineExceededException(
+                    "Deadline passed while waiting for the response: " + e);
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    /**
+     * Completes an invocation sent to the given endpoint, counting server errors as failures,
+     * except for invocations dropped by the server because their deadline passed or rejected
+     * because the service was at its concurrency limit.
+     */
+    private static void complete(EndpointBalancer.Selection endpoint, int code, long startTime) {
+        if (code == 503 || code == 504) {
+            endpoint.release();
+        } else if (code >= 500) {
+            endpoint.failed();
+        } else {
+            endpoint.succeeded(System.nanoTime() - startTime);
+        }
+    }
+
+    private HttpPost newPost(EndpointBalancer.Selection endpoint) {
+        HttpPost post = new HttpPost(endpoint.getServiceUrl());
+        post.setHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        if (stringRefFactory != null) {
+            post.setHeader(HttpHeaders.ACCEPT, ACCEPT_STRINGREF);
+        }
+        if (schemaFingerprint != null) {
+            post.setHeader(SchemaFingerprint.HEADER_NAME, schemaFingerprint);
+        }
+        if (exceptionRegistry.getHash() != null) {
+            post.setHeader(ExceptionRegistry.HEADER_NAME, exceptionRegistry.getHash());
+        }
+        String tableHash = methodTableHash;
+        if (tableHash != null) {
+            post.setHeader(ServiceSchema.HEADER_NAME, tableHash);
+        }
+        Long deadline = DeadlineContext.getDeadline();
+        if (deadline != null) {
+            post.setHeader(DeadlineContext.HEADER_NAME, DeadlineContext.toHeader(deadline));
+            // Replaces the default request config of the client, whose other settings do not matter here
+            Timeout remaining = Timeout.ofMilliseconds(Math.max(
+                    TimeUnit.NANOSECONDS.toMillis(DeadlineContext.remainingNanos(deadline)), 1));
+            post.setConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(remaining)
+                    .setResponseTimeout(remaining)
+                    .build());
+        }
+        return post;
+    }
+
+    /**
+     * Waits for the outcome of an exchange, cancelling it if the calling thread is interrupted.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Compresses the request entity if the server is known to accept a compressed request
+     * and its size is unknown or reaches the compression threshold.
+     */
+    private HttpEntity compress(MethodInvocationEntity entity, EndpointBalancer.Selection endpoint) {
+        ContentCoding coding = endpoint.getEndpoint().getRequestCoding();
+        long length = entity.getContentLength();
+        if (coding == null || (length >= 0 && length < compressionThreshold)) {
+            return entity;
+        }
+        return new CompressingEntity(entity, coding);
+    }
+
+    private static byte[] compress(byte[] content, ContentCoding coding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 2 + 64);
+        try (OutputStream output = coding.encode(bytes)) {
+            output.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decode(HttpResponse response, byte[] content) throws IOException {
+        Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding == null || content == null) {
+            return content;
+        }
+        try (InputStream input = ContentCoding.decode(contentEncoding.getValue(), new ByteArrayInputStream(content))) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * Returns the factory to encode requests to the given endpoint with, which writes CBOR string
+     * references once its server has shown to understand them by using them in a response.
+     */
+    private CBORFactory requestFactory(EndpointBalancer.Selection endpoint) {
+        return endpoint.getEndpoint().isStringRefAccepted() ? stringRefFactory : cborFactory;
+    }
+
+    /**
+     * Encodes an invocation to be sent to the given endpoint, releasing the endpoint if that fails.
+     */
+    private MethodInvocationEntity encode(EndpointBalancer.Selection endpoint, MethodInvocationDescriptor descriptor,
+                                          Object[] arguments) throws IOException {
+        try {
+            return new MethodInvocationEntity(descriptor, arguments, requestFactory(endpoint), requestBufferPool,
+                    repeatableRequests);
+        } catch (IOException | RuntimeException e) {
+            endpoint.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Learns the content codings the server at the given endpoint accepts for requests from the
+     * <code>Accept-Encoding</code> header of its responses, if request compression is enabled, and
+     * whether it understands CBOR string references from the <code>Content-Type</code> header, if enabled.
+     * Both are kept per endpoint, since servers of different versions may serve the same service
+     * while they are upgraded one by one.
+     */
+    private void negotiate(EndpointBalancer.Selection selection, HttpResponse response) {
+        EndpointBalancer.Endpoint endpoint = selection.getEndpoint();
+        if (!endpoint.isStringRefAccepted() && stringRefFactory != null) {
+            Header header = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+            if (header != null && CborMediaType.isStringRef(header.getValue())) {
+                endpoint.setStringRefAccepted(true);
+            }
+        }
+        if (endpoint.getRequestCoding() == null && compressionThreshold >= 0) {
+            Header header = response.getFirstHeader(HttpHeaders.ACCEPT_ENCODING);
+            if (header != null) {
+                endpoint.setRequestCoding(ContentCoding.negotiate(header.getValue(), preferredCoding));
+            }
+        }
+    }
+
+    /**
+     * Falls back to invoking methods by name if the server rejected an invocation by ID because its
+     * method table differs from the one fetched in the handshake, e.g. because it has been redeployed
+     * with a changed interface, or because it is not the endpoint the table was fetched from.
+     * Other rejections the server marks are reported, see
+     * {@link MethodInvocationResponseHandler#checkRejection(HttpResponse)}.
+     *
+     * @throws MethodTableMismatchException if so
+     */
+    private void checkMethodTable(HttpResponse response) {
+        if (response.getCode() != 409 || !response.containsHeader(ServiceSchema.HEADER_NAME)) {
+            MethodInvocationResponseHandler.checkRejection(response);
+            return;
+        }
+        handshakeLock.lock();
+        try {
+            if (methodIds != null) {
+                logger.warn("Method table of {} changed since the handshake, invoking methods by name",
+                        absoluteServiceUrl);
+                methodIds = null;
+                methodTableHash = null;
+                descriptors.clear();
+            }
+        } finally {
+            handshakeLock.unlock();
+        }
+        throw new MethodTableMismatchException("HTTP request failed: 409, the method table of " +
+                absoluteServiceUrl + " changed since the handshake");
+    }
+
+    private byte[] toByteArray(MethodInvocationEntity entity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                (int) Math.max(entity.getContentLength(), requestBufferPool.getBufferSize()));
+        entity.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sends an invocation of a method returning a {@link java.util.concurrent.CompletionStage}
+     * as a blocking call on a virtual thread of its own.
+     */
+    protected CompletableFuture<Object> executeOnVirtualThread(MethodInvocationDescriptor descriptor, Object[] arguments) {
+        Long deadline = DeadlineContext.getDeadline();
+        return CompletableFuture.supplyAsync(() -> {
+            DeadlineContext.Scope scope = DeadlineContext.withDeadline(deadline);
+            try (scope) {
+                return execute(descriptor, arguments);
+            } catch (Throwable t) {
+                throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+            }
+        }, virtualThreadExecutor);
+    }
+
+    /**
+     * Returns the asynchronous HTTP client, looking up a {@link CloseableHttpAsyncClient} bean
+     * and starting it on first use, unless one has been set explicitly.
+     */
+    protected CloseableHttpAsyncClient getAsyncHttpClient() {
+        CloseableHttpAsyncClient client = asyncHttpClient;
+        if (client == null) {
+            client = beanFactory != null ?
+                    beanFactory.getBeanProvider(CloseableHttpAsyncClient.class).getIfAvailable() : null;
+            if (client == null) {
+                throw new IllegalStateException("A CloseableHttpAsyncClient bean is required for " +
+                        "asynchronous invocations of " + serviceInterface.getName());
+            }
+            client.start();
+            asyncHttpClient = client;
+        }
+        return client;
+    }
+
+    /**
+     * Sends a batch of invocations as a single request. A batch consisting of a single
+     * invocation is sent as a regular invocation.
+     */
+    private void executeBatch(List<InvocationBatcher.Call> batch) {
+        if (batch.size() == 1) {
+            InvocationBatcher.Call call = batch.get(0);
+            try {
+                call.complete(execute(call.getDescriptor(), call.getArguments()));
+            } catch (Throwable t) {
+                call.fail(t);
+            }
+            return;
+        }
+        InvocationBatchResponseHandler handler = new InvocationBatchResponseHandler(batch, cborFactory);
+        EndpointBalancer.Selection endpoint = balancer.select();
+        MethodInvocationEntity entity;
+        byte[] content = null;
+        try {
+            entity = new MethodInvocationEntity(batch, requestFactory(endpoint), requestBufferPool, repeatableRequests);
+            if (http2Client != null) {
+                content = toByteArray(entity);
+            }
+        } catch (IOException | RuntimeException e) {
+            endpoint.release();
+            batch.forEach(call -> call.fail(e));
+            return;
+        }
+        try (entity) {
+            if (content != null) {
+                await(exchange(endpoint, content, entity.isStringRef(), (code, body) -> {
+                    handler.handleResponse(code, new ByteArrayInputStream(body));
+                    return null;
+                }));
+            } else {
+                post(endpoint, compress(entity, endpoint), handler::handleResponse);
+            }
+        } catch (Throwable t) {
+            batch.forEach(call -> call.fail(t));
+        }
+    }
+
+    protected MethodInvocationDescriptor getDescriptor(Method method) {
+        MethodInvocationDescriptor descriptor = descriptors.get(method);
+        if (descriptor == null) {
+            int methodId = getMethodId(method);
+            descriptor = descriptors.computeIfAbsent(method,
+                    m -> new MethodInvocationDescriptor(m, cborMapper, cborFactory, metrics.forMethod(m), methodId,
+                            exceptionRegistry));
+        }
+        return descriptor;
+    }
+
+    /**
+     * Returns the ID to invoke the given method by, performing the handshake with the server
+     * first if enabled.
+     *
+     * @return the ID, or a negative value to invoke the method by name
+     * @throws IllegalStateException if the method table of the server lacks the method
+     */
+    private int getMethodId(Method method) {
+        if (!handshake) {
+            return -1;
+        }
+        if (!handshakeDone) {
+            handshake();
+        }
+        if (methodIds == null) {
+            return -1;
+        }
+        String signature = ServiceSchema.signature(method);
+        Integer methodId = methodIds.get(signature);
+        if (methodId == null) {
+            throw new IllegalStateException(String.format("Method %s is not exported by %s",
+                    signature, absoluteServiceUrl));
+        }
+        return methodId;
+    }
+
+    /**
+     * Fetches the method table of the server, reporting all differences between the interfaces
+     * at once. If the server does not provide the table, methods are invoked by name.
+     * <p>Concurrent callers wait on a {@link ReentrantLock} rather than the monitor of the proxy,
+     * so that virtual threads waiting for the request do not pin their carrier threads, and
+     * other state of the proxy is not held up by it.
+     */
+    private void handshake() {
+        handshakeLock.lock();
+        try {
+            if (!handshakeDone) {
+                fetchMethodIds();
+            }
+        } finally {
+            handshakeLock.unlock();
+        }
+    }
+
+    private void fetchMethodIds() {
+        try {
+            Map<String, Object> table = cborMapper.readValue(fetchMethodTable(), new TypeReference<>() {
+            });
+            Map<String, Integer> ids = ServiceSchema.readIds(table);
+            ServiceSchema schema = new ServiceSchema(serviceInterface);
+            if (!schema.getHash().equals(ServiceSchema.readHash(table))) {
+                List<String> missing = schema.getMethods().stream().map(ServiceSchema::signature)
+                        .filter(signature -> !ids.containsKey(signature)).toList();
+                logger.warn("Interface {} differs from the one exported at {}, methods not exported: {}",
+                        serviceInterface.getName(), absoluteServiceUrl, missing);
+            }
+            this.methodIds = ids;
+            this.methodTableHash = ServiceSchema.readHash(table);
+        } catch (Exception e) {
+            logger.warn("Handshake with {} failed, invoking methods by name: {}", absoluteServiceUrl, e.toString());
+        }
+        this.handshakeDone = true;
+    }
+
+    /**
+     * Fetches the method table from an endpoint selected by the balancer, assuming that all
+     * endpoints export the same interface. Endpoints exporting another one reject invocations
+     * by ID, see {@link #checkMethodTable(HttpResponse)}.
+     */
+    private byte[] fetchMethodTable() throws Exception {
+        if (httpClient != null) {
+            EndpointBalancer.Selection endpoint = balancer.select();
+            return send(endpoint, new HttpGet(endpoint.getServiceUrl()), response -> {
+                MethodInvocationResponseHandler.checkStatus(response.getCode());
+                return EntityUtils.toByteArray(response.getEntity());
+            });
+        }
+        EndpointBalancer.Selection endpoint = balancer.select();
+        long startTime = System.nanoTime();
+        SimpleHttpResponse response;
+        try {
+            response = http2Client.execute(SimpleRequestBuilder.get(endpoint.getServiceUrl()).build(), null).get();
+        } catch (ExecutionException e) {
+            endpoint.failed();
+            throw e;
+        } catch (Exception e) {
+            endpoint.release();
+            throw e;
+        }
+        complete(endpoint, response.getCode(), startTime);
+        MethodInvocationResponseHandler.checkStatus(response.getCode());
+        return response.getBodyBytes();
+    }
+
     public Environment getEnvironment() {
         return environment;
     }
@@ -97,6 +1230,64 @@ public class HttpInvokerProxyFactoryBean implements EnvironmentAware, FactoryBea
         this.httpClient = httpClient;
     }
 
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * @param virtualThreads whether to run asynchronous invocations as blocking calls on virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @return the balancer distributing invocations over the endpoints of the service
+     */
+    public EndpointBalancer getEndpointBalancer() {
+        return balancer;
+    }
+
+    /**
+     * @return the statistics of the result caches of all {@link RemoteCacheable} methods
+     */
+    public Map<Method, CacheStats> getResultCacheStats() {
+        Map<Method, CacheStats> stats = new HashMap<>();
+        resultCaches.forEach((method, cache) -> stats.put(method, cache.stats()));
+        return stats;
+    }
+
+    /**
+     * @return the statistics of the connection pool of the HTTP client, or <code>null</code>
+     * if the client has not been created by this library
+     */
+    public PoolStats getConnectionPoolStats() {
+        return httpClientFactory != null ? httpClientFactory.getTotalStats() : null;
+    }
+
+    /**
+     * @param metrics the metrics to record invocations with, instead of those backed by the
+     *                Micrometer <code>MeterRegistry</code> of the bean factory, if there is one
+     */
+    public void setMetrics(RemotingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param http2Client the HTTP/2 client to use for all invocations, instead of the one shared by all proxies
+     */
+    public void setHttp2Client(CloseableHttpAsyncClient http2Client) {
+        this.http2Client = http2Client;
+    }
+
+    /**
+     * @param asyncHttpClient the asyncHttpClient to use for asynchronous invocations
+     */
+    public void setAsyncHttpClient(CloseableHttpAsyncClient asyncHttpClient) {
+        this.asyncHttpClient = asyncHttpClient;
+    }
+
     /**
      * @return the cborMapperFactory
      */
@@ -160,4 +1351,37 @@ public class HttpInvokerProxyFactoryBean implements EnvironmentAware, FactoryBea
     public boolean isSingleton() {
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * A cached result, with the size of its encoded invocation and response.
+     */
+    private static final class CachedResult {
+
+        final Object value;
+        final int size;
+
+        CachedResult(Object value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Thrown if the server rejected an invocation by ID because its method table differs from
+     * the one fetched in the handshake, see {@link #checkMethodTable(HttpResponse)}.
+     */
+    private static final class MethodTableMismatchException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        MethodTableMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+
+        T read(int code, byte[] content) throws Exception;
+    }
+}
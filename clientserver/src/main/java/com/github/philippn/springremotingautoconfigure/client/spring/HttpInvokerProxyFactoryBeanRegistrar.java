@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
@@ -45,9 +46,22 @@ public class HttpInvokerProxyFactoryBeanRegistrar implements ImportBeanDefinitio
 
     final static Logger logger = LoggerFactory.getLogger(HttpInvokerProxyFactoryBeanRegistrar.class);
 
+    /**
+     * Name of the HTTP/2 client shared by all proxies with <code>remote.http2.enabled</code> set.
+     */
+    public static final String HTTP2_CLIENT_BEAN_NAME = "remotingHttp2Client";
+
+    /**
+     * Name of the pooled HTTP client shared by all proxies, unless the application has a
+     * <code>CloseableHttpClient</code> bean of its own.
+     */
+    public static final String HTTP_CLIENT_BEAN_NAME = "remotingHttpClient";
+
     private final Set<String> alreadyProxiedSet =
             Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+    private boolean virtualThreads;
+
     /* (non-Javadoc)
      * @see org.springframework.context.annotation.ImportBeanDefinitionRegistrar#registerBeanDefinitions(org.springframework.core.type.AnnotationMetadata, org.springframework.beans.factory.support.BeanDefinitionRegistry)
      */
@@ -62,6 +76,7 @@ public class HttpInvokerProxyFactoryBeanRegistrar implements ImportBeanDefinitio
                     EnableHttpInvokerAutoProxy autoProxy =
                             AnnotationUtils.findAnnotation(resolvedClass, EnableHttpInvokerAutoProxy.class);
                     if (autoProxy != null) {
+                        virtualThreads |= autoProxy.virtualThreads();
                         if (autoProxy.basePackages().length > 0) {
                             Collections.addAll(basePackages, autoProxy.basePackages());
                         } else {
@@ -79,6 +94,30 @@ public class HttpInvokerProxyFactoryBeanRegistrar implements ImportBeanDefinitio
             return;
         }
 
+        if (!registry.containsBeanDefinition(HTTP_CLIENT_BEAN_NAME)) {
+            AbstractBeanDefinition httpClientDefinition = BeanDefinitionBuilder
+                    .genericBeanDefinition(RemotingHttpClientFactoryBean.class)
+                    .addAutowiredProperty("environment")
+                    .setLazyInit(true)
+                    .getBeanDefinition();
+            httpClientDefinition.setAutowireCandidate(false);
+            httpClientDefinition.setSynthetic(true);
+            registry.registerBeanDefinition(HTTP_CLIENT_BEAN_NAME, httpClientDefinition);
+        }
+
+        if (!registry.containsBeanDefinition(HTTP2_CLIENT_BEAN_NAME)) {
+            AbstractBeanDefinition http2ClientDefinition = BeanDefinitionBuilder
+                    .genericBeanDefinition(RemotingHttpAsyncClients.class)
+                    .setFactoryMethod("createHttp2Default")
+                    .setInitMethodName("start")
+                    .setDestroyMethodName("close")
+                    .setLazyInit(true)
+                    .getBeanDefinition();
+            http2ClientDefinition.setAutowireCandidate(false);
+            http2ClientDefinition.setSynthetic(true);
+            registry.registerBeanDefinition(HTTP2_CLIENT_BEAN_NAME, http2ClientDefinition);
+        }
+
         ClassPathScanningCandidateComponentProvider scanner =
                 new ClassPathScanningCandidateComponentProvider(false) {
 
@@ -124,9 +163,9 @@ public class HttpInvokerProxyFactoryBeanRegistrar implements ImportBeanDefinitio
                 .setLazyInit(true)
                 .addPropertyValue("serviceInterface", clazz)
                 .addPropertyValue("serviceUrl", RemotingUtils.buildMappingPath(clazz))
+                .addPropertyValue("virtualThreads", virtualThreads)
                 .addAutowiredProperty("cborMapperFactory")
-                .addAutowiredProperty("environment")
-                .addAutowiredProperty("httpClient");
+                .addAutowiredProperty("environment");
         RootBeanDefinition beanDefinition = (RootBeanDefinition) builder.getBeanDefinition();
         beanDefinition.setSynthetic(true);
         beanDefinition.setTargetType(clazz);
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORParser;
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reads the array of result frames of a batch request and completes each call of the batch.
+ */
+class InvocationBatchResponseHandler implements HttpClientResponseHandler<Void> {
+
+    private final List<InvocationBatcher.Call> batch;
+    private final CBORFactory cborFactory;
+
+    InvocationBatchResponseHandler(List<InvocationBatcher.Call> batch, CBORFactory cborFactory) {
+        this.batch = batch;
+        this.cborFactory = cborFactory;
+    }
+
+    @Override
+    public Void handleResponse(ClassicHttpResponse response) throws HttpException, IOException {
+        handleResponse(response.getCode(), ContentCoding.decode(
+                response.getEntity().getContentEncoding(), response.getEntity().getContent()));
+        return null;
+    }
+
+    /**
+     * Handles a response given by its status code and decoded content, e.g. as received by an asynchronous client.
+     */
+    void handleResponse(int code, InputStream content) throws IOException {
+        MethodInvocationResponseHandler.checkStatus(code);
+        try (CBORParser input = cborFactory.createParser(content)) {
+            input.nextToken();
+            for (InvocationBatcher.Call call : batch) {
+                input.nextToken();
+                try {
+                    call.complete(call.getDescriptor().getResponseHandler().readResult(input));
+                } catch (MethodInvocationException e) {
+                    call.fail(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects concurrent invocations of a proxy into batches. The first caller of a batch
+ * waits until the batch window has elapsed or the batch is full and then sends the batch
+ * on behalf of all its callers, so no additional threads are needed.
+ * <p>Callers wait on a {@link ReentrantLock} rather than a monitor, so that virtual threads
+ * waiting for the batch window do not pin their carrier threads.
+ *
+ * @author Philipp Nanz
+ */
+class InvocationBatcher {
+
+    private final long windowNanos;
+    private final int maxSize;
+    private final Consumer<List<Call>> sender;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition closed = lock.newCondition();
+    private List<Call> pending;
+
+    /**
+     * @param window the time in milliseconds to wait for further invocations
+     * @param maxSize the maximum number of invocations per batch
+     * @param sender sends a batch, completing each of its calls
+     */
+    InvocationBatcher(long window, int maxSize, Consumer<List<Call>> sender) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+        this.maxSize = maxSize;
+        this.sender = sender;
+    }
+
+    Object invoke(MethodInvocationDescriptor descriptor, Object[] arguments) throws Throwable {
+        Call call = new Call(descriptor, arguments);
+        List<Call> batch;
+        boolean leader;
+        lock.lock();
+        try {
+            leader = pending == null;
+            if (leader) {
+                pending = new ArrayList<>();
+            }
+            batch = pending;
+            batch.add(call);
+            if (batch.size() >= maxSize) {
+                pending = null;
+                closed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (leader) {
+            boolean interrupted = awaitBatch(batch);
+            try {
+                sender.accept(batch);
+            } catch (Throwable t) {
+                batch.forEach(c -> c.fail(t));
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return call.await();
+    }
+
+    /**
+     * Waits until the given batch is closed, closing it when the window has elapsed.
+     *
+     * @return whether the waiting thread has been interrupted
+     */
+    private boolean awaitBatch(List<Call> batch) {
+        lock.lock();
+        try {
+            long remaining = windowNanos;
+            while (pending == batch && remaining > 0) {
+                remaining = closed.awaitNanos(remaining);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        } finally {
+            if (pending == batch) {
+                pending = null;
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A single invocation within a batch.
+     */
+    static class Call {
+
+        private final MethodInvocationDescriptor descriptor;
+        private final Object[] arguments;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Call(MethodInvocationDescriptor descriptor, Object[] arguments) {
+            this.descriptor = descriptor;
+            this.arguments = arguments;
+        }
+
+        MethodInvocationDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+        Object[] getArguments() {
+            return arguments;
+        }
+
+        void complete(Object value) {
+            result.complete(value);
+        }
+
+        void fail(Throwable exception) {
+            result.completeExceptionally(exception);
+        }
+
+        Object await() throws Throwable {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof MethodInvocationException) {
+                    throw e.getCause().getCause();
+                }
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.philippn.springremotingautoconfigure.annotation.Idempotent;
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteDeadline;
+import com.github.philippn.springremotingautoconfigure.annotation.RoutingKey;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationMetrics;
+import com.github.philippn.springremotingautoconfigure.util.CborStreams;
+import com.github.philippn.springremotingautoconfigure.util.ExceptionRegistry;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Invocation metadata of a single remote method, prepared once per proxy so that
+ * calls do not need any reflection or type construction.
+ *
+ * @author Philipp Nanz
+ */
+public class MethodInvocationDescriptor {
+
+    private static final HashFunction ROUTING_HASH = Hashing.murmur3_128();
+
+    private final Method method;
+    private final byte[] header;
+    private final boolean invokedByName;
+    private final ObjectWriter[] argumentWriters;
+    private final ObjectReader resultReader;
+    private final boolean asynchronous;
+    private final boolean streaming;
+    private final boolean streamingArgument;
+    private final int routingKeyIndex;
+    private final long timeoutNanos;
+    private final boolean idempotent;
+    private final MethodInvocationResponseHandler responseHandler;
+    private final InvocationMetrics metrics;
+
+    public MethodInvocationDescriptor(Method method, CBORMapper cborMapper, CBORFactory cborFactory) {
+        this(method, cborMapper, cborFactory, InvocationMetrics.NONE);
+    }
+
+    public MethodInvocationDescriptor(Method method, CBORMapper cborMapper, CBORFactory cborFactory,
+                                      InvocationMetrics metrics) {
+        this(method, cborMapper, cborFactory, metrics, -1);
+    }
+
+    /**
+     * @param methodId the ID to invoke the method by, as assigned by the method table of the
+     *                 server, or a negative value to invoke it by name
+     */
+    public MethodInvocationDescriptor(Method method, CBORMapper cborMapper, CBORFactory cborFactory,
+                                      InvocationMetrics metrics, int methodId) {
+        this(method, cborMapper, cborFactory, metrics, methodId,
+                new ExceptionRegistry(method.getDeclaringClass(), cborMapper));
+    }
+
+    /**
+     * @param methodId   the ID to invoke the method by, as assigned by the method table of the
+     *                   server, or a negative value to invoke it by name
+     * @param exceptions the registry of the exceptions declared by the service, shared by its methods
+     */
+    public MethodInvocationDescriptor(Method method, CBORMapper cborMapper, CBORFactory cborFactory,
+                                      InvocationMetrics metrics, int methodId, ExceptionRegistry exceptions) {
+        this.method = method;
+        this.metrics = metrics;
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        this.header = encodeHeader(method.getName(), methodId, parameterTypes.length, cborFactory);
+        this.invokedByName = methodId < 0;
+        this.argumentWriters = new ObjectWriter[parameterTypes.length];
+        this.streamingArgument = RemotingUtils.hasStreamingArgument(method);
+        int fixedArity = streamingArgument ? parameterTypes.length - 1 : parameterTypes.length;
+        for (int i = 0; i < fixedArity; i++) {
+            argumentWriters[i] = RemotingUtils.writerFor(cborMapper, parameterTypes[i]);
+        }
+        if (streamingArgument && Stream.class.equals(method.getParameterTypes()[fixedArity])) {
+            JavaType elementType = cborMapper.getTypeFactory()
+                    .constructType(parameterTypes[fixedArity]).containedTypeOrUnknown(0);
+            argumentWriters[fixedArity] = RemotingUtils.writerFor(cborMapper, elementType)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+        JavaType resultType = RemotingUtils.resolveResultType(cborMapper.getTypeFactory(), method);
+        this.resultReader = resultType.hasRawClass(Void.class) ? null : cborMapper.readerFor(resultType);
+        this.asynchronous = RemotingUtils.isAsynchronous(method);
+        this.streaming = RemotingUtils.isStreaming(method);
+        this.routingKeyIndex = findRoutingKey(method, fixedArity);
+        RemoteDeadline deadline = method.isAnnotationPresent(RemoteDeadline.class) ?
+                method.getAnnotation(RemoteDeadline.class) : method.getDeclaringClass().getAnnotation(RemoteDeadline.class);
+        this.timeoutNanos = deadline != null ? deadline.timeUnit().toNanos(deadline.value()) : -1;
+        this.idempotent = !streamingArgument && (method.isAnnotationPresent(Idempotent.class) ||
+                method.getDeclaringClass().isAnnotationPresent(Idempotent.class));
+        this.responseHandler = new MethodInvocationResponseHandler(this, cborFactory, exceptions);
+    }
+
+    /**
+     * Encodes the start of the invocation array, i.e. the array header of known size
+     * followed by the method name or ID and its arity.
+     */
+    private static byte[] encodeHeader(String methodName, int methodId, int arity, CBORFactory cborFactory) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CBORGenerator output = cborFactory.createGenerator(bytes)) {
+            output.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            output.writeStartArray(null, arity + 2);
+            if (methodId >= 0) {
+                output.writeNumber(methodId);
+            } else {
+                output.writeString(methodName);
+            }
+            output.writeNumber(arity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the index of the parameter annotated with {@link RoutingKey}, or -1 if there is none
+     */
+    private static int findRoutingKey(Method method, int fixedArity) {
+        int index = -1;
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof RoutingKey) {
+                    if (index >= 0 || i >= fixedArity) {
+                        throw new IllegalArgumentException(String.format("Method %s may only have a single " +
+                                "@RoutingKey parameter, which must not be a streaming argument", method));
+                    }
+                    index = i;
+                }
+            }
+        }
+        return index;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getArity() {
+        return argumentWriters.length;
+    }
+
+    /**
+     * Writes an invocation of this method, i.e. the pre-encoded header followed by the arguments.
+     * With CBOR string references, a method name is written by the generator instead, which
+     * keeps track of the strings written.
+     *
+     * @param output the generator to write the arguments with
+     * @param outputStream the stream underlying the generator, to write the header to
+     */
+    public void writeInvocation(CBORGenerator output, OutputStream outputStream, Object[] arguments) throws IOException {
+        output.flush();
+        if (invokedByName && output.isEnabled(CBORGenerator.Feature.STRINGREF)) {
+            // The server numbers the method name among the string references, so the generator must, too
+            CborStreams.writeHeader(outputStream, CborStreams.MAJOR_TYPE_ARRAY, argumentWriters.length + 2);
+            output.writeString(method.getName());
+            output.writeNumber(argumentWriters.length);
+        } else {
+            outputStream.write(header);
+        }
+        int fixedArity = streamingArgument ? argumentWriters.length - 1 : argumentWriters.length;
+        for (int i = 0; i < fixedArity; i++) {
+            argumentWriters[i].writeValue(output, arguments[i]);
+        }
+        if (streamingArgument) {
+            writeStreamingArgument(output, outputStream, arguments[fixedArity]);
+        }
+    }
+
+    /**
+     * Writes the content of an {@link InputStream} or {@link ReadableByteChannel} as an
+     * indefinite-length byte string, or the elements of a {@link Stream} as an indefinite-length
+     * array, while they are read. The argument is consumed but not closed.
+     */
+    private void writeStreamingArgument(CBORGenerator output, OutputStream outputStream,
+                                        Object argument) throws IOException {
+        if (argument == null) {
+            output.writeNull();
+        } else if (argument instanceof Stream) {
+            ObjectWriter elementWriter = argumentWriters[argumentWriters.length - 1];
+            output.writeStartArray();
+            Iterator<?> elements = ((Stream<?>) argument).iterator();
+            while (elements.hasNext()) {
+                elementWriter.writeValue(output, elements.next());
+            }
+            output.writeEndArray();
+        } else {
+            output.flush();
+            CborStreams.writeByteString(argument instanceof ReadableByteChannel ?
+                    Channels.newInputStream((ReadableByteChannel) argument) : (InputStream) argument, outputStream);
+        }
+    }
+
+    /**
+     * @return whether the last argument is an {@link InputStream}, {@link ReadableByteChannel}
+     * or {@link Stream} whose content is sent while it is read
+     */
+    public boolean hasStreamingArgument() {
+        return streamingArgument;
+    }
+
+    /**
+     * @return the writer for the argument at the given index, for the elements of a streaming
+     * {@link Stream} argument, or <code>null</code> for a streaming byte argument
+     */
+    public ObjectWriter getArgumentWriter(int index) {
+        return argumentWriters[index];
+    }
+
+    /**
+     * @return whether the method has a parameter annotated with {@link RoutingKey}
+     */
+    public boolean hasRoutingKey() {
+        return routingKeyIndex >= 0;
+    }
+
+    /**
+     * Hashes the routing key of an invocation. Strings are hashed as they are, other keys in
+     * their encoded form, so that equal keys hash alike in every client.
+     *
+     * @return the hash, or <code>null</code> if the method has no routing key
+     */
+    public HashCode hashRoutingKey(Object[] arguments) throws IOException {
+        if (routingKeyIndex < 0) {
+            return null;
+        }
+        Object key = arguments[routingKeyIndex];
+        if (key instanceof String) {
+            return ROUTING_HASH.hashString((String) key, StandardCharsets.UTF_8);
+        }
+        return ROUTING_HASH.hashBytes(argumentWriters[routingKeyIndex].writeValueAsBytes(key));
+    }
+
+    /**
+     * Resolves the deadline of an invocation starting now, i.e. the earlier of the given deadline
+     * and the one set by {@link RemoteDeadline}.
+     *
+     * @param deadline the {@link System#nanoTime()} of the deadline of the caller, or <code>null</code>
+     * @return the {@link System#nanoTime()} of the deadline, or <code>null</code> if there is none
+     */
+    public Long resolveDeadline(Long deadline) {
+        if (timeoutNanos < 0) {
+            return deadline;
+        }
+        long own = System.nanoTime() + timeoutNanos;
+        return deadline == null || own - deadline < 0 ? own : deadline;
+    }
+
+    /**
+     * @return whether the method is annotated with {@link Idempotent} and may thus be hedged,
+     * which is never the case for a method with a streaming argument
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * @return whether the method returns a {@link java.util.concurrent.CompletionStage} of its result
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * @return whether the method returns a {@link Stream}, {@link Iterator} or {@link Iterable}
+     * whose elements are received one by one
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Adapts the elements of a streaming result to the return type of the method. A returned
+     * {@link Iterable} can only be iterated once.
+     *
+     * @param closeHandler invoked when a returned {@link Stream} is closed, may be <code>null</code>
+     */
+    public Object adaptElements(Iterator<Object> elements, Runnable closeHandler) {
+        if (Iterator.class.equals(method.getReturnType())) {
+            return elements;
+        }
+        if (Stream.class.equals(method.getReturnType())) {
+            Stream<Object> stream = StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false);
+            return closeHandler != null ? stream.onClose(closeHandler) : stream;
+        }
+        AtomicBoolean iterated = new AtomicBoolean();
+        return (Iterable<Object>) () -> {
+            if (iterated.getAndSet(true)) {
+                throw new IllegalStateException("Streaming result of " + method.getName() + " can only be iterated once");
+            }
+            return elements;
+        };
+    }
+
+    /**
+     * @return the reader for the result, or for its elements if the method is streaming,
+     * or <code>null</code> if the method returns {@link Void}
+     */
+    public ObjectReader getResultReader() {
+        return resultReader;
+    }
+
+    public MethodInvocationResponseHandler getResponseHandler() {
+        return responseHandler;
+    }
+
+    public InvocationMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -15,61 +15,146 @@
  */
 package com.github.philippn.springremotingautoconfigure.client.spring;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
-import com.google.common.io.FileBackedOutputStream;
-import org.aopalliance.intercept.MethodInvocation;
+import com.github.philippn.springremotingautoconfigure.util.BufferPool;
+import com.github.philippn.springremotingautoconfigure.util.CborMediaType;
+import com.github.philippn.springremotingautoconfigure.util.CborStreams;
 import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 
+/**
+ * Request entity for a single method invocation.
+ * <p>Invocations that fit into a pooled buffer are encoded up front and sent with an exact
+ * content length. Larger invocations are encoded directly into the connection output stream
+ * by {@link #writeTo(OutputStream)} and sent chunked. Such entities are only repeatable if
+ * requested, in which case the invocation is encoded again on every write.
+ * <p>Invocations with a streaming argument are always encoded directly into the connection
+ * output stream, and are not repeatable since the argument can only be read once.
+ * <p>An entity may also carry a batch of invocations, encoded as an array of invocations.
+ * <p>If the given factory writes CBOR string references, the content type says so.
+ */
 public class MethodInvocationEntity extends AbstractHttpEntity {
 
+    private final Encoder encoder;
     private final CBORFactory cborFactory;
-    private final FileBackedOutputStream outputStream;
+    private final BufferPool bufferPool;
+    private final boolean repeatable;
+    private BufferPool.Buffer buffer;
+    private boolean written;
+
+    public MethodInvocationEntity(MethodInvocationDescriptor descriptor, Object[] arguments, CBORFactory cborFactory,
+                                  BufferPool bufferPool, boolean repeatable) throws IOException {
+        this((output, outputStream) -> descriptor.writeInvocation(output, outputStream, arguments),
+                cborFactory, bufferPool, repeatable && !descriptor.hasStreamingArgument(),
+                !descriptor.hasStreamingArgument());
+    }
+
+    public MethodInvocationEntity(List<InvocationBatcher.Call> batch, CBORFactory cborFactory,
+                                  BufferPool bufferPool, boolean repeatable) throws IOException {
+        this((output, outputStream) -> {
+            // Writes the string reference namespace tag, if any, ahead of the array it applies to
+            output.flush();
+            CborStreams.writeHeader(outputStream, CborStreams.MAJOR_TYPE_ARRAY, batch.size());
+            for (InvocationBatcher.Call call : batch) {
+                call.getDescriptor().writeInvocation(output, outputStream, call.getArguments());
+            }
+        }, cborFactory, bufferPool, repeatable, true);
+    }
 
-    public MethodInvocationEntity(MethodInvocation methodInvocation, CBORFactory cborFactory) throws IOException {
-        super("application/cbor", null, true);
+    private MethodInvocationEntity(Encoder encoder, CBORFactory cborFactory, BufferPool bufferPool,
+                                   boolean repeatable, boolean buffered) throws IOException {
+        super(CborMediaType.forStringRefs(cborFactory.isEnabled(CBORGenerator.Feature.STRINGREF)), null);
+        this.encoder = encoder;
         this.cborFactory = cborFactory;
-        this.outputStream = new FileBackedOutputStream(1024*1024);
-        initOutputStream(methodInvocation);
+        this.bufferPool = bufferPool;
+        this.repeatable = repeatable;
+        if (buffered) {
+            initBuffer();
+        }
     }
 
-    private void initOutputStream(MethodInvocation methodInvocation) throws IOException {
-        try (CBORGenerator output = cborFactory.createGenerator(outputStream)) {
-            output.writeStartArray();
-            output.writeString(methodInvocation.getMethod().getName());
-            output.writeNumber(methodInvocation.getMethod().getParameterCount());
-            for (int i = 0; i < methodInvocation.getMethod().getParameterCount(); i++) {
-                output.writeObject(methodInvocation.getArguments()[i]);
+    private void initBuffer() throws IOException {
+        buffer = bufferPool.acquire();
+        try {
+            encode(buffer);
+        } catch (IOException e) {
+            boolean overflowed = buffer.isOverflowed();
+            bufferPool.release(buffer);
+            buffer = null;
+            if (!overflowed) {
+                throw e;
             }
-            output.writeEndArray();
+        }
+    }
+
+    private void encode(OutputStream outputStream) throws IOException {
+        try (CBORGenerator output = cborFactory.createGenerator(outputStream)) {
+            output.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            encoder.encode(output, outputStream);
         }
     }
 
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (buffer != null) {
+            buffer.writeTo(outStream);
+            return;
+        }
+        if (written && !repeatable) {
+            throw new IllegalStateException("Method invocation entity is not repeatable");
+        }
+        written = true;
+        encode(outStream);
+        outStream.flush();
+    }
+
     @Override
     public InputStream getContent() throws IOException, UnsupportedOperationException {
-        return outputStream.asByteSource().openStream();
+        if (buffer == null) {
+            throw new UnsupportedOperationException("Method invocation is encoded directly into the output stream");
+        }
+        return buffer.asInputStream();
+    }
+
+    /**
+     * @return whether the invocation is encoded with CBOR string references
+     */
+    boolean isStringRef() {
+        return cborFactory.isEnabled(CBORGenerator.Feature.STRINGREF);
     }
 
     @Override
     public boolean isStreaming() {
-        return true;
+        return buffer == null && !repeatable;
     }
 
     @Override
     public void close() throws IOException {
-        outputStream.close();
+        if (buffer != null) {
+            bufferPool.release(buffer);
+            buffer = null;
+        }
     }
 
     @Override
     public boolean isRepeatable() {
-        return true;
+        return buffer != null || repeatable;
     }
 
     @Override
     public long getContentLength() {
-        return -1;
+        return buffer != null ? buffer.size() : -1;
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+
+        void encode(CBORGenerator output, OutputStream outputStream) throws IOException;
     }
 }
@@ -15,56 +15,217 @@
  */
 package com.github.philippn.springremotingautoconfigure.client.spring;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.dataformat.cbor.CBORParser;
-import org.aopalliance.intercept.MethodInvocation;
+import com.github.philippn.springremotingautoconfigure.cbor.SchemaFingerprint;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationMetrics;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationPhase;
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineExceededException;
+import com.github.philippn.springremotingautoconfigure.util.ExceptionRegistry;
+import com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException;
+import com.github.philippn.springremotingautoconfigure.util.ServiceSchema;
+import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MethodInvocationResponseHandler implements HttpClientResponseHandler<Object> {
 
-    private final MethodInvocation methodInvocation;
+    private final MethodInvocationDescriptor descriptor;
     private final CBORFactory cborFactory;
-    private final TypeFactory typeFactory;
+    private final ExceptionRegistry exceptions;
 
-    public MethodInvocationResponseHandler(MethodInvocation methodInvocation, CBORFactory cborFactory, TypeFactory typeFactory) {
-        this.methodInvocation = methodInvocation;
+    public MethodInvocationResponseHandler(MethodInvocationDescriptor descriptor, CBORFactory cborFactory,
+                                           ExceptionRegistry exceptions) {
+        this.descriptor = descriptor;
         this.cborFactory = cborFactory;
-        this.typeFactory = typeFactory;
+        this.exceptions = exceptions;
     }
 
     @Override
     public Object handleResponse(ClassicHttpResponse response) throws HttpException, IOException {
-        if (response.getCode() != 200) {
-            throw new IllegalStateException(String.format("HTTP request failed: %s", response.getCode()));
+        checkStatus(response.getCode());
+        if (descriptor.getResultReader() == null) {
+            return null;
         }
-        if (Void.class.equals(methodInvocation.getMethod().getReturnType())) {
+        return readResponse(ContentCoding.decode(
+                response.getEntity().getContentEncoding(), response.getEntity().getContent()));
+    }
+
+    /**
+     * Handles a response whose content has been received and decoded as a whole, e.g. by an asynchronous client.
+     */
+    public Object handleResponse(int code, byte[] content) throws IOException {
+        checkStatus(code);
+        if (descriptor.getResultReader() == null) {
             return null;
         }
-        try (CBORParser input = cborFactory.createParser(response.getEntity().getContent())) {
+        return readResponse(new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Reports the rejections of an invocation that the server marks by a header naming what the
+     * client disagrees with, while other responses with the same status, e.g. of a proxy in
+     * between, are reported by {@link #checkStatus(int)}.
+     */
+    static void checkRejection(HttpResponse response) {
+        if (response.getCode() == 400 && response.containsHeader(ServiceSchema.HEADER_NAME)) {
+            throw new IllegalStateException("HTTP request failed: 400, the method has several overloads of the " +
+                    "same arity on the server, which can only be invoked with remote.handshake enabled");
+        }
+        if (response.getCode() == 409 && response.containsHeader(SchemaFingerprint.HEADER_NAME)) {
+            throw new IllegalStateException("HTTP request failed: 409, the schema fingerprint of the compact " +
+                    "encoding does not match the one of the server");
+        }
+    }
+
+    static void checkStatus(int code) {
+        if (code == 503) {
+            throw new ServiceOverloadedException("HTTP request failed: 503, the service is overloaded");
+        }
+        if (code == 504) {
+            throw new DeadlineExceededException("HTTP request failed: 504, the deadline of the invocation " +
+                    "passed on the server");
+        }
+        if (code != 200) {
+            throw new IllegalStateException(String.format("HTTP request failed: %s", code));
+        }
+    }
+
+    /**
+     * Reads the response, recording the time spent and the uncompressed size read.
+     */
+    private Object readResponse(InputStream content) throws IOException {
+        long decodeStart = System.nanoTime();
+        try (CBORParser input = cborFactory.createParser(content)) {
+            try {
+                input.nextToken();
+                return readResult(input);
+            } finally {
+                InvocationMetrics metrics = descriptor.getMetrics();
+                metrics.recordPhase(InvocationPhase.DECODE, System.nanoTime() - decodeStart);
+                metrics.recordResponseSize(input.getCurrentLocation().getByteOffset());
+            }
+        }
+    }
+
+    /**
+     * Reads the result of a streaming method from an open response. The elements are read while
+     * they are consumed, and the response is closed once all of them have been read or the
+     * returned stream is closed, cancelling the request in the latter case.
+     *
+     * @throws MethodInvocationException wrapping the exception thrown by the remote method
+     */
+    Object openStreamingResult(Cancellable request, ClassicHttpResponse response) throws IOException {
+        checkStatus(response.getCode());
+        CBORParser input = cborFactory.createParser(ContentCoding.decode(
+                response.getEntity().getContentEncoding(), response.getEntity().getContent()));
+        boolean open = false;
+        try {
             input.nextToken();
             input.nextToken();
-            boolean success = input.getValueAsBoolean();
-            if (success) {
+            if (!input.getValueAsBoolean()) {
                 input.nextToken();
-                JavaType retType = typeFactory.constructType(methodInvocation.getMethod().getGenericReturnType());
-                return input.getCodec().readValue(input, retType);
-            } else {
+                throw readException(input);
+            }
+            if (input.nextToken() != JsonToken.START_ARRAY) {
+                return null;
+            }
+            StreamingResultIterator elements = new StreamingResultIterator(this, input, request, response);
+            open = true;
+            return descriptor.adaptElements(elements, elements::close);
+        } finally {
+            if (!open) {
+                input.close();
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a <code>[true, result]</code> or <code>[false, exceptionClass, exception]</code> frame,
+     * where the exception class is given by its name or its code in the {@link ExceptionRegistry},
+     * starting at its opening token and ending at its closing token. The elements of a streaming
+     * result are read as a whole.
+     *
+     * @throws MethodInvocationException wrapping the exception thrown by the remote method
+     */
+    Object readResult(CBORParser input) throws IOException {
+        input.nextToken();
+        boolean success = input.getValueAsBoolean();
+        if (success) {
+            Object result = null;
+            if (descriptor.getResultReader() != null) {
                 input.nextToken();
-                String exceptionClassName = input.getValueAsString();
-                try {
-                    Class<?> exceptionClass = Class.forName(exceptionClassName);
-                    input.nextToken();
-                    throw new MethodInvocationException((Throwable) input.readValueAs(exceptionClass));
-                } catch (ClassNotFoundException e) {
-                    throw new IllegalStateException(String.format("Exception could not be deserialized: %s", exceptionClassName));
+                if (descriptor.isStreaming() && input.currentToken() == JsonToken.START_ARRAY) {
+                    List<Object> elements = new ArrayList<>();
+                    while (input.nextToken() != JsonToken.END_ARRAY) {
+                        elements.add(descriptor.getResultReader().readValue(input));
+                    }
+                    readStreamEnd(input);
+                    return descriptor.adaptElements(elements.iterator(), null);
                 }
+                result = descriptor.getResultReader().readValue(input);
+            }
+            input.nextToken();
+            return result;
+        } else {
+            input.nextToken();
+            throw readException(input);
+        }
+    }
+
+    /**
+     * Reads the end of a frame following the elements of a streaming result, which carries
+     * the exception if producing the elements failed.
+     *
+     * @throws MethodInvocationException wrapping the exception thrown while producing the elements
+     */
+    void readStreamEnd(CBORParser input) throws IOException {
+        JsonToken token = input.nextToken();
+        if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT) {
+            throw readException(input);
+        }
+    }
+
+    /**
+     * Reads the exception class and exception, starting at the class name or code and ending at the
+     * closing token of the frame.
+     */
+    private MethodInvocationException readException(CBORParser input) throws IOException {
+        ObjectReader reader;
+        if (input.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            int code = input.getIntValue();
+            reader = exceptions.getReader(code);
+            if (reader == null) {
+                throw new IllegalStateException(String.format("Exception could not be deserialized: code %s", code));
+            }
+        } else {
+            String exceptionClassName = input.getValueAsString();
+            try {
+                reader = exceptions.getReader(exceptionClassName);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(
+                        String.format("Exception could not be deserialized: %s", exceptionClassName));
             }
         }
+        input.nextToken();
+        Throwable exception = reader.readValue(input);
+        input.nextToken();
+        return new MethodInvocationException(exception);
+    }
+
+    MethodInvocationDescriptor getDescriptor() {
+        return descriptor;
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/**
+ * Retries like the default strategy of the HTTP clients, except for responses with status 503,
+ * by which servers shed load. They are thrown as a
+ * {@link com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException}
+ * instead, leaving it to the caller whether and when to retry.
+ * <p>Used by the HTTP clients the proxies create, see {@link RemotingHttpAsyncClients} for
+ * asynchronous clients provided by the application.
+ *
+ * @author Philipp Nanz
+ */
+public class NoOverloadRetryStrategy extends DefaultHttpRequestRetryStrategy {
+
+    @Override
+    public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+        return response.getCode() != 503 && super.retryRequest(response, execCount, context);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+
+/**
+ * Creates asynchronous HTTP clients for remoting proxies. Unlike the clients created by
+ * {@link HttpAsyncClients}, they do not retry invocations rejected with status 503, which
+ * would delay reporting the overload by a second and add to it, see {@link NoOverloadRetryStrategy}.
+ * <p>The <code>CloseableHttpAsyncClient</code> bean used for asynchronous invocations should be
+ * created by {@link #createDefault()}, or configured with a {@link NoOverloadRetryStrategy}.
+ *
+ * @author Philipp Nanz
+ */
+public final class RemotingHttpAsyncClients {
+
+    private RemotingHttpAsyncClients() {
+    }
+
+    /**
+     * @return a new HTTP/1.1 client with default configuration, not retrying overloaded services
+     */
+    public static CloseableHttpAsyncClient createDefault() {
+        return HttpAsyncClients.custom()
+                .setRetryStrategy(new NoOverloadRetryStrategy())
+                .build();
+    }
+
+    /**
+     * @return a new HTTP/2 client with default configuration, not retrying overloaded services
+     */
+    public static CloseableHttpAsyncClient createHttp2Default() {
+        return HttpAsyncClients.customHttp2()
+                .setRetryStrategy(new NoOverloadRetryStrategy())
+                .build();
+    }
+}
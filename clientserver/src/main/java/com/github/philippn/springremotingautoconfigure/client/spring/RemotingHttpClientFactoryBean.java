@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.github.philippn.springremotingautoconfigure.metrics.RemotingMetrics;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertyResolver;
+
+import java.util.List;
+
+/**
+ * Creates a {@link CloseableHttpClient} for remoting proxies, backed by a
+ * {@link PoolingHttpClientConnectionManager}. It is configured by the following properties,
+ * prefixed with <code>remote.http.</code>, or with <code>remote.services.&lt;SimpleName&gt;.http.</code>
+ * for the client of a single service:
+ * <ul>
+ *     <li><code>maxTotal</code>: maximum number of connections (default 200)</li>
+ *     <li><code>maxPerRoute</code>: maximum number of connections per host (default 50)</li>
+ *     <li><code>connectTimeout</code>: connect timeout in milliseconds (default 5000)</li>
+ *     <li><code>responseTimeout</code>: maximum inactivity in milliseconds while waiting for a
+ *     response, or 0 for none (default 0, since invocations may run for long)</li>
+ *     <li><code>idleTimeout</code>: time in milliseconds after which idle connections are closed (default 60000)</li>
+ *     <li><code>validateAfterInactivity</code>: time in milliseconds after which pooled connections
+ *     are checked before reuse (default 2000)</li>
+ *     <li><code>tcpNoDelay</code>: whether to disable Nagle's algorithm (default true)</li>
+ * </ul>
+ *
+ * @author Philipp Nanz
+ */
+public class RemotingHttpClientFactoryBean implements BeanFactoryAware, BeanNameAware, DisposableBean,
+        EnvironmentAware, FactoryBean<CloseableHttpClient>, InitializingBean {
+
+    static final List<String> PROPERTY_KEYS = List.of("maxTotal", "maxPerRoute", "connectTimeout",
+            "responseTimeout", "idleTimeout", "validateAfterInactivity", "tcpNoDelay");
+
+    private Environment environment;
+    private BeanFactory beanFactory;
+    private String beanName;
+    private Class<?> serviceInterface;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    /**
+     * @return whether any of the client properties is set for the given service
+     */
+    static boolean hasServiceProperties(PropertyResolver propertyResolver, Class<?> serviceInterface) {
+        for (String key : PROPERTY_KEYS) {
+            if (propertyResolver.containsProperty(
+                    "remote.services." + serviceInterface.getSimpleName() + ".http." + key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        SocketConfig socketConfig = SocketConfig.custom()
+                .setTcpNoDelay(getProperty("tcpNoDelay", Boolean.class, true))
+                .build();
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(getProperty("connectTimeout", Long.class, 5000L)))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(
+                        getProperty("validateAfterInactivity", Long.class, 2000L)))
+                .build();
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(getProperty("maxTotal", Integer.class, 200))
+                .setMaxConnPerRoute(getProperty("maxPerRoute", Integer.class, 50))
+                .setDefaultSocketConfig(socketConfig)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+        RequestConfig.Builder requestConfig = RequestConfig.custom();
+        long responseTimeout = getProperty("responseTimeout", Long.class, 0L);
+        if (responseTimeout > 0) {
+            requestConfig.setResponseTimeout(Timeout.ofMilliseconds(responseTimeout));
+        }
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig.build())
+                .setRetryStrategy(new NoOverloadRetryStrategy())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(getProperty("idleTimeout", Long.class, 60000L)))
+                .build();
+        if (beanFactory != null) {
+            RemotingMetrics.bindConnectionPool(beanFactory,
+                    serviceInterface != null ? serviceInterface.getSimpleName() : beanName, connectionManager);
+        }
+    }
+
+    private <T> T getProperty(String key, Class<T> targetType, T defaultValue) {
+        if (serviceInterface != null) {
+            return RemotingUtils.getServiceProperty(environment, serviceInterface, "http." + key, targetType, defaultValue);
+        }
+        return environment.getProperty("remote.http." + key, targetType, defaultValue);
+    }
+
+    @Override
+    public void destroy() {
+        if (httpClient != null) {
+            httpClient.close(CloseMode.GRACEFUL);
+        }
+    }
+
+    @Override
+    public CloseableHttpClient getObject() {
+        return httpClient;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return CloseableHttpClient.class;
+    }
+
+    /**
+     * @return the statistics of the connection pool, summed over all routes
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * @return the connection pool of the client
+     */
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * @param serviceInterface the service whose <code>remote.services.&lt;SimpleName&gt;.http.</code>
+     *                         properties override the <code>remote.http.</code> properties
+     */
+    public void setServiceInterface(Class<?> serviceInterface) {
+        this.serviceInterface = serviceInterface;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void setBeanName(String beanName) {
+        this.beanName = beanName;
+    }
+}
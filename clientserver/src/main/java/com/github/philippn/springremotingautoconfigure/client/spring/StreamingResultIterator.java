@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORParser;
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator reading the elements of a streaming result from an open response, one at a time.
+ * The response is closed once the last element has been read. Closing the iterator before that
+ * cancels the request, since the remaining elements would otherwise have to be read to release
+ * the connection.
+ * <p>An exception thrown by the remote method while producing the elements is rethrown by
+ * {@link #hasNext()}, wrapped in a {@link MethodInvocationException} if it is checked.
+ */
+class StreamingResultIterator implements Iterator<Object>, Closeable {
+
+    private final MethodInvocationResponseHandler handler;
+    private final CBORParser input;
+    private final Cancellable request;
+    private final Closeable response;
+    private boolean advanced;
+    private boolean finished;
+    private boolean exhausted;
+
+    StreamingResultIterator(MethodInvocationResponseHandler handler, CBORParser input,
+                            Cancellable request, Closeable response) {
+        this.handler = handler;
+        this.input = input;
+        this.request = request;
+        this.response = response;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!advanced && !finished) {
+            advanced = true;
+            try {
+                if (input.nextToken() == JsonToken.END_ARRAY) {
+                    finished = true;
+                    handler.readStreamEnd(input);
+                    exhausted = true;
+                    close();
+                }
+            } catch (MethodInvocationException e) {
+                close();
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+        return !finished;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advanced = false;
+        try {
+            return handler.getDescriptor().getResultReader().readValue(input);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the underlying response, cancelling the request if elements are left unread.
+     */
+    @Override
+    public void close() {
+        finished = true;
+        if (!exhausted) {
+            request.cancel();
+        }
+        try {
+            input.close();
+            response.close();
+        } catch (IOException e) {
+            // Nothing left to read from the response
+        }
+    }
+}
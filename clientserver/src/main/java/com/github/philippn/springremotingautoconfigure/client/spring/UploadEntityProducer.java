@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.client.spring;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.nio.support.classic.AbstractClassicEntityProducer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Request entity of the asynchronous HTTP client writing a classic request entity, typically an
+ * invocation with a streaming argument, on an executor while it is sent. The buffer towards the
+ * I/O threads of the client is bounded, so the argument is read no faster than it is sent.
+ */
+class UploadEntityProducer extends AbstractClassicEntityProducer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HttpEntity entity;
+    private final CompletableFuture<Void> failure = new CompletableFuture<>();
+
+    UploadEntityProducer(HttpEntity entity, Executor executor) {
+        super(BUFFER_SIZE, ContentType.parse(entity.getContentType()), executor);
+        this.entity = entity;
+    }
+
+    @Override
+    protected void produceData(ContentType contentType, OutputStream outputStream) throws IOException {
+        try {
+            entity.writeTo(outputStream);
+        } catch (IOException | RuntimeException e) {
+            failure.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return a future failing with the exception by which writing the entity failed, e.g. reading
+     * the argument, and never completing otherwise
+     */
+    CompletableFuture<Void> getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.metrics;
+
+/**
+ * Records the metrics of the invocations of a single service method. Durations are given
+ * in nanoseconds, sizes in bytes of the uncompressed CBOR payload.
+ *
+ * @author Philipp Nanz
+ */
+public interface InvocationMetrics {
+
+    /**
+     * Metrics discarding everything, used while no meter registry is available.
+     */
+    InvocationMetrics NONE = new InvocationMetrics() {
+    };
+
+    /**
+     * Records a completed invocation.
+     *
+     * @param exception the exception the invocation failed with, or <code>null</code> if it succeeded
+     */
+    default void recordCall(long nanos, Throwable exception) {
+    }
+
+    default void recordPhase(InvocationPhase phase, long nanos) {
+    }
+
+    default void recordRequestSize(long bytes) {
+    }
+
+    default void recordResponseSize(long bytes) {
+    }
+}
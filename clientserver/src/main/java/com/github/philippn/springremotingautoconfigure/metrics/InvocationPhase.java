@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.metrics;
+
+/**
+ * Phases of a remote invocation that are timed separately.
+ *
+ * @author Philipp Nanz
+ */
+public enum InvocationPhase {
+
+    /**
+     * Writing the invocation on the client, or the result on the server.
+     */
+    ENCODE,
+
+    /**
+     * Waiting for the response on the client, from sending the request until the response arrives.
+     */
+    WAIT,
+
+    /**
+     * Reading the result on the client, or the invocation on the server.
+     */
+    DECODE,
+
+    /**
+     * Running the service method on the server, until its result is available.
+     */
+    INVOKE;
+
+    private final String tag = name().toLowerCase();
+
+    /**
+     * @return the value of the <code>phase</code> tag
+     */
+    public String getTag() {
+        return tag;
+    }
+}
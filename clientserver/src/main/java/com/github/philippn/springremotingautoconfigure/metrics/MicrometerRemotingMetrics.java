@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.BeanFactory;
+
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link RemotingMetrics} backed by a Micrometer {@link MeterRegistry}. For each method, it
+ * registers the following meters, tagged with <code>service</code> and <code>method</code>:
+ * <ul>
+ *     <li><code>&lt;prefix&gt;.calls</code>: timer with latency histogram, additionally tagged with
+ *     the simple name of the <code>exception</code> class, or <code>none</code></li>
+ *     <li><code>&lt;prefix&gt;.phase</code>: timer, additionally tagged with the <code>phase</code>,
+ *     which is one of encode, wait and decode on the client, or decode, invoke and encode on the server</li>
+ *     <li><code>&lt;prefix&gt;.request.size</code> and <code>&lt;prefix&gt;.response.size</code>:
+ *     distribution summaries in bytes</li>
+ * </ul>
+ *
+ * @author Philipp Nanz
+ */
+public class MicrometerRemotingMetrics implements RemotingMetrics {
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final String serviceName;
+
+    public MicrometerRemotingMetrics(MeterRegistry registry, String prefix, Class<?> serviceInterface) {
+        this.registry = registry;
+        this.prefix = prefix;
+        this.serviceName = serviceInterface.getSimpleName();
+    }
+
+    static RemotingMetrics lookup(BeanFactory beanFactory, String prefix, Class<?> serviceInterface) {
+        MeterRegistry registry = beanFactory.getBeanProvider(MeterRegistry.class).getIfUnique();
+        return registry == null ? NONE : new MicrometerRemotingMetrics(registry, prefix, serviceInterface);
+    }
+
+    static void bindConnectionPool(BeanFactory beanFactory, String name, ConnPoolControl<?> pool) {
+        MeterRegistry registry = beanFactory.getBeanProvider(MeterRegistry.class).getIfUnique();
+        if (registry != null) {
+            bindPoolGauge(registry, name, pool, "leased", PoolStats::getLeased);
+            bindPoolGauge(registry, name, pool, "available", PoolStats::getAvailable);
+            bindPoolGauge(registry, name, pool, "pending", PoolStats::getPending);
+            bindPoolGauge(registry, name, pool, "max", PoolStats::getMax);
+        }
+    }
+
+    private static void bindPoolGauge(MeterRegistry registry, String name, ConnPoolControl<?> pool,
+                                      String state, ToIntFunction<PoolStats> value) {
+        Gauge.builder(CLIENT + ".pool." + state, pool, p -> value.applyAsInt(p.getTotalStats()))
+                .description("Connections of the HTTP client pool")
+                .tag("pool", name)
+                .register(registry);
+    }
+
+    static void bindBulkhead(BeanFactory beanFactory, String name, ThreadPoolExecutor executor,
+                             AtomicLong rejected) {
+        MeterRegistry registry = beanFactory.getBeanProvider(MeterRegistry.class).getIfUnique();
+        if (registry != null) {
+            bindBulkheadGauge(registry, name, executor, "active", ThreadPoolExecutor::getActiveCount);
+            bindBulkheadGauge(registry, name, executor, "threads", ThreadPoolExecutor::getPoolSize);
+            bindBulkheadGauge(registry, name, executor, "max", ThreadPoolExecutor::getMaximumPoolSize);
+            bindBulkheadGauge(registry, name, executor, "queued", e -> e.getQueue().size());
+            FunctionCounter.builder(SERVER + ".bulkhead.rejected", rejected, AtomicLong::doubleValue)
+                    .description("Invocations rejected by the bulkhead executor")
+                    .tag("bulkhead", name)
+                    .register(registry);
+        }
+    }
+
+    private static void bindBulkheadGauge(MeterRegistry registry, String name, ThreadPoolExecutor executor,
+                                          String state, ToIntFunction<ThreadPoolExecutor> value) {
+        Gauge.builder(SERVER + ".bulkhead." + state, executor, value::applyAsInt)
+                .description("Threads and queued invocations of the bulkhead executor")
+                .tag("bulkhead", name)
+                .register(registry);
+    }
+
+    @Override
+    public InvocationMetrics forMethod(Method method) {
+        return new MethodMetrics(Tags.of("service", serviceName, "method", method.getName()));
+    }
+
+    private class MethodMetrics implements InvocationMetrics {
+
+        private final Tags tags;
+        private final Timer succeeded;
+        private final Map<Class<?>, Timer> failed = new ConcurrentHashMap<>();
+        private final Map<InvocationPhase, Timer> phases = new EnumMap<>(InvocationPhase.class);
+        private final DistributionSummary requestSize;
+        private final DistributionSummary responseSize;
+
+        MethodMetrics(Tags tags) {
+            this.tags = tags;
+            this.succeeded = callTimer("none");
+            // The client waits for the server, which invokes the method
+            InvocationPhase otherSide = SERVER.equals(prefix) ? InvocationPhase.WAIT : InvocationPhase.INVOKE;
+            for (InvocationPhase phase : InvocationPhase.values()) {
+                if (phase == otherSide) {
+                    continue;
+                }
+                phases.put(phase, Timer.builder(prefix + ".phase")
+                        .description("Time spent in a phase of remote invocations")
+                        .tags(tags).tag("phase", phase.getTag())
+                        .register(registry));
+            }
+            this.requestSize = sizeSummary("request");
+            this.responseSize = sizeSummary("response");
+        }
+
+        private Timer callTimer(String exception) {
+            return Timer.builder(prefix + ".calls")
+                    .description("Remote invocations")
+                    .tags(tags).tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        private DistributionSummary sizeSummary(String direction) {
+            return DistributionSummary.builder(prefix + "." + direction + ".size")
+                    .description("Uncompressed " + direction + " payload size of remote invocations")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        @Override
+        public void recordCall(long nanos, Throwable exception) {
+            Timer timer = exception == null ? succeeded :
+                    failed.computeIfAbsent(exception.getClass(), type -> callTimer(type.getSimpleName()));
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void recordPhase(InvocationPhase phase, long nanos) {
+            Timer timer = phases.get(phase);
+            if (timer != null) {
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void recordRequestSize(long bytes) {
+            requestSize.record(bytes);
+        }
+
+        @Override
+        public void recordResponseSize(long bytes) {
+            responseSize.record(bytes);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.metrics;
+
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of the {@link InvocationMetrics} of the methods of a remote service.
+ *
+ * @author Philipp Nanz
+ */
+public interface RemotingMetrics {
+
+    /**
+     * Metrics discarding everything, used while no meter registry is available.
+     */
+    RemotingMetrics NONE = method -> InvocationMetrics.NONE;
+
+    /**
+     * Metric name prefix of the client side.
+     */
+    String CLIENT = "remoting.client";
+
+    /**
+     * Metric name prefix of the server side.
+     */
+    String SERVER = "remoting.server";
+
+    /**
+     * @return the metrics of the given service method
+     */
+    InvocationMetrics forMethod(Method method);
+
+    /**
+     * Looks up the metrics of a remote service, backed by the unique Micrometer
+     * <code>MeterRegistry</code> of the given bean factory if Micrometer is on the classpath.
+     *
+     * @param prefix either {@link #CLIENT} or {@link #SERVER}
+     * @return the metrics, or {@link #NONE} if there is no meter registry
+     */
+    static RemotingMetrics lookup(BeanFactory beanFactory, String prefix, Class<?> serviceInterface) {
+        if (!ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+                RemotingMetrics.class.getClassLoader())) {
+            return NONE;
+        }
+        return MicrometerRemotingMetrics.lookup(beanFactory, prefix, serviceInterface);
+    }
+
+    /**
+     * Registers gauges of the leased, available, pending and maximum connections of an HTTP
+     * client connection pool, if Micrometer is on the classpath and the given bean factory
+     * has a unique <code>MeterRegistry</code>.
+     *
+     * @param name the value of the <code>pool</code> tag
+     */
+    static void bindConnectionPool(BeanFactory beanFactory, String name, ConnPoolControl<?> pool) {
+        if (ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+                RemotingMetrics.class.getClassLoader())) {
+            MicrometerRemotingMetrics.bindConnectionPool(beanFactory, name, pool);
+        }
+    }
+
+    /**
+     * Registers gauges of the active threads, pool size, maximum pool size, queued tasks and
+     * rejected tasks of a bulkhead executor, if Micrometer is on the classpath and the given bean
+     * factory has a unique <code>MeterRegistry</code>.
+     *
+     * @param name     the value of the <code>bulkhead</code> tag
+     * @param rejected the number of tasks rejected so far
+     */
+    static void bindBulkhead(BeanFactory beanFactory, String name, ThreadPoolExecutor executor,
+                             AtomicLong rejected) {
+        if (ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+                RemotingMetrics.class.getClassLoader())) {
+            MicrometerRemotingMetrics.bindBulkhead(beanFactory, name, executor, rejected);
+        }
+    }
+}
@@ -32,4 +32,11 @@ import java.lang.annotation.*;
 @Import(HttpInvokerServiceExporterRegistrar.class)
 public @interface EnableHttpInvokerAutoExport {
 
+    /**
+     * Whether to run invocations of exported services on virtual threads, unless a service
+     * specifies its own {@link com.github.philippn.springremotingautoconfigure.annotation.RemoteExport#executor()}.
+     * Can also be enabled by setting the property <code>remote.server.virtualThreads</code>.
+     * Requires Java 21 or later.
+     */
+    boolean virtualThreads() default false;
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.server.spring;
+
+import com.github.philippn.springremotingautoconfigure.metrics.RemotingMetrics;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates a bounded executor isolating the invocations of the services assigned to a bulkhead,
+ * see {@link com.github.philippn.springremotingautoconfigure.annotation.RemoteExport#bulkhead()}.
+ * It is configured by the following properties, prefixed with
+ * <code>remote.server.bulkheads.&lt;name&gt;.</code>:
+ * <ul>
+ *     <li><code>threads</code>: maximum number of threads, which are started on demand and
+ *     stopped after a minute of idleness (default 10)</li>
+ *     <li><code>queueSize</code>: maximum number of invocations waiting for a thread, or 0 for
+ *     none (default 100)</li>
+ *     <li><code>rejection</code>: what happens to an invocation once all threads are busy and the
+ *     queue is full; <code>reject</code> to answer it with status 503, or <code>caller-runs</code>
+ *     to run it on the request thread instead (default <code>reject</code>)</li>
+ * </ul>
+ *
+ * @author Philipp Nanz
+ */
+public class BulkheadExecutorFactoryBean implements BeanFactoryAware, DisposableBean, EnvironmentAware,
+        FactoryBean<ThreadPoolExecutor>, InitializingBean {
+
+    private static final int DEFAULT_THREADS = 10;
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private Environment environment;
+    private BeanFactory beanFactory;
+    private String name;
+    private ThreadPoolExecutor executor;
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Override
+    public void afterPropertiesSet() {
+        int threads = getProperty("threads", Integer.class, DEFAULT_THREADS);
+        int queueSize = getProperty("queueSize", Integer.class, DEFAULT_QUEUE_SIZE);
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue,
+                new CustomizableThreadFactory("remoting-" + name + "-"), rejectionHandler());
+        executor.allowCoreThreadTimeOut(true);
+        if (beanFactory != null) {
+            RemotingMetrics.bindBulkhead(beanFactory, name, executor, rejected);
+        }
+    }
+
+    private RejectedExecutionHandler rejectionHandler() {
+        String rejection = getProperty("rejection", String.class, "reject");
+        RejectedExecutionHandler handler;
+        switch (rejection.trim().toLowerCase(Locale.ROOT)) {
+            case "reject":
+                handler = new ThreadPoolExecutor.AbortPolicy();
+                break;
+            case "caller-runs":
+                handler = new ThreadPoolExecutor.CallerRunsPolicy();
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported rejection policy of bulkhead %s: %s",
+                        name, rejection));
+        }
+        return (task, pool) -> {
+            rejected.incrementAndGet();
+            handler.rejectedExecution(task, pool);
+        };
+    }
+
+    private <T> T getProperty(String key, Class<T> targetType, T defaultValue) {
+        return environment.getProperty("remote.server.bulkheads." + name + "." + key, targetType, defaultValue);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public ThreadPoolExecutor getObject() {
+        return executor;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return ThreadPoolExecutor.class;
+    }
+
+    /**
+     * @return the number of invocations rejected so far, including those run by the caller instead
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name the name of the bulkhead, which selects its properties
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.server.spring;
+
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response stream that compresses the response body once it reaches a minimum size or is
+ * flushed, e.g. by a streaming result. Smaller responses are written uncompressed with an
+ * exact content length when the stream is closed.
+ */
+class CompressingResponseStream extends OutputStream {
+
+    private final HttpServletResponse response;
+    private final ContentCoding coding;
+    private final int threshold;
+    private ByteArrayOutputStream pending;
+    private OutputStream target;
+
+    CompressingResponseStream(HttpServletResponse response, ContentCoding coding, int threshold) {
+        this.response = response;
+        this.coding = coding;
+        this.threshold = threshold;
+        this.pending = new ByteArrayOutputStream(Math.min(Math.max(threshold, 32), 8192));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (target != null) {
+            target.write(b);
+            return;
+        }
+        pending.write(b);
+        if (pending.size() >= threshold) {
+            startCompression();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (target != null) {
+            target.write(b, off, len);
+            return;
+        }
+        pending.write(b, off, len);
+        if (pending.size() >= threshold) {
+            startCompression();
+        }
+    }
+
+    private void startCompression() throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+        target = coding.encode(response.getOutputStream());
+        pending.writeTo(target);
+        pending = null;
+    }
+
+    /**
+     * Starts compressing if not done yet, since the size of a flushed response is not known
+     * in advance, then flushes everything written so far to the client.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (target == null) {
+            if (pending == null) {
+                return;
+            }
+            startCompression();
+        }
+        target.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (target != null) {
+            target.close();
+        } else if (pending != null) {
+            response.setContentLength(pending.size());
+            OutputStream outputStream = response.getOutputStream();
+            pending.writeTo(outputStream);
+            pending = null;
+            outputStream.close();
+        }
+    }
+}
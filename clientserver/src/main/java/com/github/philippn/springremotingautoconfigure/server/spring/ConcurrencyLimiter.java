@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.server.spring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive limit of the requests a service handles concurrently, adjusted by additive increase
+ * and multiplicative decrease (AIMD) based on the observed latency.
+ * <p>A request taking longer than the tolerance times the baseline latency, a slowly moving average
+ * of all requests, signals queueing: the limit is then multiplied by {@value #BACKOFF_RATIO}, at most
+ * once per baseline latency so that a burst of slow requests counts once. Otherwise the limit grows
+ * by one per limit's worth of requests, as long as at least half of it is in use.
+ * <p>Requests over the limit are rejected instead of queueing up, which keeps the latency of the
+ * admitted ones low. Streaming results count until their last element has been written.
+ *
+ * @author Philipp Nanz
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_TOLERANCE = 2.0;
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double BASELINE_SMOOTHING = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int currentLimit;
+    private double limit;
+    private double baselineNanos = -1;
+    private long lastDecrease;
+
+    /**
+     * @param initialLimit the limit to start with
+     * @param minLimit     the lower bound of the limit
+     * @param maxLimit     the upper bound of the limit
+     * @param tolerance    the factor by which a request may exceed the baseline latency before
+     *                     the limit is decreased, e.g. 2
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance <= 1) {
+            throw new IllegalArgumentException(String.format("Invalid concurrency limits: min %s, max %s, " +
+                    "tolerance %s", minLimit, maxLimit, tolerance));
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+        this.currentLimit = (int) limit;
+    }
+
+    /**
+     * Admits a request if the limit has not been reached.
+     *
+     * @return the permit of the request, or <code>null</code> if it is to be rejected
+     */
+    public Permit tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.incrementAndGet();
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit();
+    }
+
+    private synchronized void onSample(long nanos, int load) {
+        if (baselineNanos < 0) {
+            baselineNanos = nanos;
+        }
+        long now = System.nanoTime();
+        if (nanos > tolerance * baselineNanos) {
+            if (now - lastDecrease > baselineNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastDecrease = now;
+            }
+        } else if (load * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        baselineNanos += BASELINE_SMOOTHING * (nanos - baselineNanos);
+        currentLimit = (int) limit;
+    }
+
+    /**
+     * @return the current limit
+     */
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    /**
+     * @return the number of requests in progress
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests rejected so far
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the baseline latency in milliseconds, or -1 if no request has completed yet
+     */
+    public synchronized double getBaselineLatency() {
+        return baselineNanos < 0 ? -1 : baselineNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * The admission of a single request, to be released once its response has been written.
+     */
+    public final class Permit {
+
+        private final long startTime = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * Releases the permit, feeding the latency of the request into the limit. Only the first
+         * release counts.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                int load = inFlight.getAndDecrement();
+                onSample(System.nanoTime() - startTime, load);
+            }
+        }
+    }
+}
@@ -16,38 +16,75 @@
 package com.github.philippn.springremotingautoconfigure.server.spring;
 
 import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
+import com.github.philippn.springremotingautoconfigure.server.annotation.EnableHttpInvokerAutoExport;
 import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.github.philippn.springremotingautoconfigure.util.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.Environment;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.core.type.MethodMetadata;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Philipp Nanz
  */
-public class HttpInvokerServiceExporterRegistrar implements ImportBeanDefinitionRegistrar {
+public class HttpInvokerServiceExporterRegistrar implements EnvironmentAware, ImportBeanDefinitionRegistrar {
 
     static final Logger logger = LoggerFactory.getLogger(HttpInvokerServiceExporterRegistrar.class);
 
+    /**
+     * Name of the executor bean running invocations on virtual threads.
+     */
+    public static final String VIRTUAL_THREAD_EXECUTOR_BEAN_NAME = "remotingVirtualThreadExecutor";
+
+    /**
+     * Prefix of the names of bulkhead executor beans, followed by the name of the bulkhead.
+     */
+    public static final String BULKHEAD_BEAN_NAME_PREFIX = "remotingBulkhead.";
+
     private final Set<String> alreadyExportedSet = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+    private Environment environment;
+
+    private boolean virtualThreads;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
     /* (non-Javadoc)
      * @see org.springframework.context.annotation.ImportBeanDefinitionRegistrar#registerBeanDefinitions(org.springframework.core.type.AnnotationMetadata, org.springframework.beans.factory.support.BeanDefinitionRegistry)
      */
     @Override
     public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        Map<String, Object> attributes =
+                importingClassMetadata.getAnnotationAttributes(EnableHttpInvokerAutoExport.class.getName());
+        virtualThreads = (attributes != null && Boolean.TRUE.equals(attributes.get("virtualThreads"))) ||
+                environment.getProperty("remote.server.virtualThreads", Boolean.class, false);
+        if (virtualThreads && !registry.containsBeanDefinition(VIRTUAL_THREAD_EXECUTOR_BEAN_NAME)) {
+            AbstractBeanDefinition executorDefinition = BeanDefinitionBuilder
+                    .genericBeanDefinition(VirtualThreads.class)
+                    .setFactoryMethod("newVirtualThreadPerTaskExecutor")
+                    .setDestroyMethodName("shutdown")
+                    .getBeanDefinition();
+            executorDefinition.setSynthetic(true);
+            registry.registerBeanDefinition(VIRTUAL_THREAD_EXECUTOR_BEAN_NAME, executorDefinition);
+        }
         for (String beanName : registry.getBeanDefinitionNames()) {
             BeanDefinition definition = registry.getBeanDefinition(beanName);
             String className = definition.getBeanClassName();
@@ -91,6 +128,33 @@ public class HttpInvokerServiceExporterRegistrar implements ImportBeanDefinition
                 .addAutowiredProperty("cborMapperFactory")
                 .addPropertyReference("service", beanName)
                 .addPropertyValue("serviceInterface", clazz);
+        RemoteExport definition = AnnotationUtils.findAnnotation(clazz, RemoteExport.class);
+        String bulkhead = definition != null && !definition.bulkhead().isEmpty() ? definition.bulkhead() :
+                environment.getProperty("remote.server.services." + clazz.getSimpleName() + ".bulkhead");
+        if (definition != null && !definition.executor().isEmpty()) {
+            builder.addPropertyReference("executor", definition.executor());
+        } else if (bulkhead != null && !bulkhead.isEmpty()) {
+            builder.addPropertyReference("executor", registerBulkhead(bulkhead, registry));
+        } else if (virtualThreads) {
+            builder.addPropertyReference("executor", VIRTUAL_THREAD_EXECUTOR_BEAN_NAME);
+        }
+        if (definition != null && definition.compressionThreshold() >= 0) {
+            builder.addPropertyValue("compressionThreshold", definition.compressionThreshold());
+        } else {
+            builder.addPropertyValue("compressionThreshold",
+                    getServerProperty(clazz, "compression.threshold", Integer.class, -1));
+        }
+        if (definition != null && definition.compact()) {
+            builder.addPropertyValue("compact", true);
+        }
+        if (getServerProperty(clazz, "limiter.enabled", Boolean.class, false)) {
+            builder.addPropertyValue("concurrencyLimiter", new ConcurrencyLimiter(
+                    getServerProperty(clazz, "limiter.initialLimit", Integer.class,
+                            ConcurrencyLimiter.DEFAULT_INITIAL_LIMIT),
+                    getServerProperty(clazz, "limiter.minLimit", Integer.class, ConcurrencyLimiter.DEFAULT_MIN_LIMIT),
+                    getServerProperty(clazz, "limiter.maxLimit", Integer.class, ConcurrencyLimiter.DEFAULT_MAX_LIMIT),
+                    getServerProperty(clazz, "limiter.tolerance", Double.class, ConcurrencyLimiter.DEFAULT_TOLERANCE)));
+        }
         AbstractBeanDefinition beanDefinition = builder.getBeanDefinition();
         beanDefinition.setSynthetic(true);
 
@@ -99,4 +163,35 @@ public class HttpInvokerServiceExporterRegistrar implements ImportBeanDefinition
 
         logger.info("Mapping HttpInvokerServiceExporter for {} to [{}]", clazz.getSimpleName(), mappingPath);
     }
+
+    /**
+     * Registers the executor of the given bulkhead, unless another service has registered it already.
+     *
+     * @return the name of the executor bean
+     */
+    private String registerBulkhead(String name, BeanDefinitionRegistry registry) {
+        String beanName = BULKHEAD_BEAN_NAME_PREFIX + name;
+        if (!registry.containsBeanDefinition(beanName)) {
+            AbstractBeanDefinition executorDefinition = BeanDefinitionBuilder
+                    .genericBeanDefinition(BulkheadExecutorFactoryBean.class)
+                    .addPropertyValue("name", name)
+                    .addAutowiredProperty("environment")
+                    .getBeanDefinition();
+            executorDefinition.setAutowireCandidate(false);
+            executorDefinition.setSynthetic(true);
+            registry.registerBeanDefinition(beanName, executorDefinition);
+            logger.info("Registering bulkhead executor {}", name);
+        }
+        return beanName;
+    }
+
+    /**
+     * Returns a server property of the given service, i.e.
+     * <code>remote.server.services.&lt;SimpleName&gt;.&lt;key&gt;</code> if set, or else
+     * <code>remote.server.&lt;key&gt;</code>.
+     */
+    protected <T> T getServerProperty(Class<?> clazz, String key, Class<T> targetType, T defaultValue) {
+        T value = environment.getProperty("remote.server.services." + clazz.getSimpleName() + "." + key, targetType);
+        return value != null ? value : environment.getProperty("remote.server." + key, targetType, defaultValue);
+    }
 }
@@ -15,32 +15,88 @@
  */
 package com.github.philippn.springremotingautoconfigure.server.spring;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
 import com.fasterxml.jackson.dataformat.cbor.CBORParser;
 import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.cbor.SchemaFingerprint;
+import com.github.philippn.springremotingautoconfigure.metrics.RemotingMetrics;
+import com.github.philippn.springremotingautoconfigure.util.CborMediaType;
+import com.github.philippn.springremotingautoconfigure.util.CborStreams;
+import com.github.philippn.springremotingautoconfigure.util.ContentCoding;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineContext;
+import com.github.philippn.springremotingautoconfigure.util.ExceptionRegistry;
+import com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException;
+import com.github.philippn.springremotingautoconfigure.util.ServiceSchema;
+import com.google.common.io.CountingOutputStream;
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.Controller;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.Optional;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class RemotingController implements Controller, InitializingBean {
+public class RemotingController implements BeanFactoryAware, Controller, InitializingBean {
+
+    static final Logger logger = LoggerFactory.getLogger(RemotingController.class);
+
+    private static final String ACCEPT_ENCODING = ContentCoding.acceptEncoding(null);
 
     private Object service;
     private Class<?> serviceInterface;
     private CborMapperFactory cborMapperFactory;
+    private Executor executor;
+    private int compressionThreshold = -1;
+    private boolean compact;
+    private String schemaFingerprint;
+    private RemotingMetrics metrics;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private BeanFactory beanFactory;
     private CBORFactory cborFactory;
-    private TypeFactory typeFactory;
+    private CBORFactory stringRefFactory;
+    private Map<String, ServiceMethod[]> methodsByName;
+    private Set<String> ambiguousMethods;
+    private ServiceMethod[] methodsById;
+    private String methodTableHash;
+    private byte[] methodTable;
+    private ExceptionRegistry exceptionRegistry;
 
     public Object getService() {
         return service;
@@ -66,62 +122,630 @@ public class RemotingController implements Controller, InitializingBean {
         this.cborMapperFactory = cborMapperFactory;
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor on which invocations are run, moving them off the request thread.
+     * The invocations of a batch request are then run in parallel. If not set, invocations
+     * are run one after another on the request thread.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Set the minimum size in bytes from which responses are compressed, if the client
+     * accepts a supported content coding. Negative values disable compression.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Set whether to use the compact encoding, in which case requests are only accepted
+     * if they carry the schema fingerprint of the service.
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public RemotingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the metrics to record invocations with. If not set, they are backed by the
+     * Micrometer <code>MeterRegistry</code> of the bean factory, if there is one.
+     */
+    public void setMetrics(RemotingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Set the limiter of the requests handled concurrently, beyond which requests are rejected
+     * with status 503. If not set, requests are not limited.
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
-        CBORMapper mapper = cborMapperFactory.newMapper();
-        cborFactory = new CBORFactory(mapper);
-        typeFactory = mapper.getTypeFactory();
+        if (metrics == null) {
+            metrics = beanFactory != null ?
+                    RemotingMetrics.lookup(beanFactory, RemotingMetrics.SERVER, serviceInterface) : RemotingMetrics.NONE;
+        }
+        CBORMapper mapper = compact ? cborMapperFactory.newCompactMapper() : cborMapperFactory.newMapper();
+        cborFactory = CborMapperFactory.newFactory(mapper, false);
+        stringRefFactory = CborMapperFactory.newFactory(mapper, true);
+        if (compact) {
+            schemaFingerprint = SchemaFingerprint.compute(mapper, serviceInterface);
+        }
+        ServiceSchema schema = new ServiceSchema(serviceInterface);
+        Map<Method, ServiceMethod> serviceMethods = new HashMap<>();
+        methodsById = new ServiceMethod[schema.getMethods().size()];
+        for (int id = 0; id < methodsById.length; id++) {
+            Method method = schema.getMethods().get(id);
+            methodsById[id] = new ServiceMethod(method, mapper, metrics.forMethod(method));
+            serviceMethods.put(method, methodsById[id]);
+        }
+        methodsByName = buildDispatchIndex(serviceMethods);
+        methodTable = mapper.writeValueAsBytes(schema.toTable());
+        methodTableHash = schema.getHash();
+        exceptionRegistry = new ExceptionRegistry(serviceInterface, mapper);
+    }
+
+    /**
+     * Builds an index of all service methods by name and arity. Overloads sharing the same
+     * name and arity are left out of the index, as they can only be told apart by their IDs,
+     * and recorded in {@link #ambiguousMethods}.
+     */
+    private Map<String, ServiceMethod[]> buildDispatchIndex(Map<Method, ServiceMethod> serviceMethods) {
+        Map<String, ServiceMethod[]> index = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        for (Method method : serviceInterface.getMethods()) {
+            ServiceMethod[] byArity = index.get(method.getName());
+            if (byArity == null || byArity.length <= method.getParameterCount()) {
+                ServiceMethod[] grown = new ServiceMethod[method.getParameterCount() + 1];
+                if (byArity != null) {
+                    System.arraycopy(byArity, 0, grown, 0, byArity.length);
+                }
+                byArity = grown;
+                index.put(method.getName(), byArity);
+            }
+            String key = method.getName() + '/' + method.getParameterCount();
+            if (byArity[method.getParameterCount()] != null || ambiguous.contains(key)) {
+                byArity[method.getParameterCount()] = null;
+                ambiguous.add(key);
+            } else {
+                byArity[method.getParameterCount()] = serviceMethods.get(method);
+            }
+        }
+        ambiguousMethods = Set.copyOf(ambiguous);
+        return Map.copyOf(index);
     }
 
+    /**
+     * Handles a single invocation, encoded as <code>[methodName, arity, args...]</code> or
+     * <code>[methodId, arity, args...]</code>, or a batch of invocations, encoded as an array
+     * of such invocations. The response
+     * is a <code>[true, result]</code> or <code>[false, exceptionClass, exception]</code>
+     * frame for a single invocation, or an array of such frames for a batch.
+     * <p>If the outcome is not available once the request has been read, e.g. because
+     * the method returns an incomplete {@link java.util.concurrent.CompletionStage} or runs
+     * on the configured executor, the response is written asynchronously.
+     * <p>Compressed requests are accepted in any of the codings advertised by the
+     * <code>Accept-Encoding</code> response header.
+     * <p>Responses use CBOR string references if the client accepts the
+     * {@link CborMediaType#CBOR_STRINGREF} media type. Requests may use them in any case.
+     * <p>A <code>GET</code> request is answered with the method table of the service, which
+     * assigns the method IDs, see {@link ServiceSchema}. Invocations by ID are rejected with status 409
+     * unless the client sends the hash of this table, and invocations naming a method with several
+     * overloads of the same arity with status 400.
+     * <p>In compact mode, requests without the matching schema fingerprint are rejected with status 409.
+     * <p>Rejections for disagreeing with the client on the schema or the method table are marked by
+     * a response header with the fingerprint or hash of the server, see {@link SchemaFingerprint#HEADER_NAME}
+     * and {@link ServiceSchema#HEADER_NAME}, to tell them apart from other responses with the same status.
+     * <p>If the client sends a deadline, requests are rejected with status 504 once it has passed,
+     * before the arguments are decoded, before the method is invoked and before the result is encoded.
+     * <p>If a concurrency limiter is set, requests over its limit are rejected with status 503 before
+     * they are decoded. So are invocations the configured executor rejects.
+     * <p>If the client sends the hash of the {@link ExceptionRegistry} of the service and it matches,
+     * declared exceptions are written with their code in place of their class name.
+     */
     @Override
     public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws Exception {
-        try (CBORParser input = cborFactory.createParser(request.getInputStream())) {
-            input.nextToken();
-            input.nextToken();
-            String methodName = input.getValueAsString();
+        long startTime = System.nanoTime();
+        if ("GET".equals(request.getMethod())) {
+            response.setContentType(CborMediaType.CBOR);
+            response.setContentLength(methodTable.length);
+            response.getOutputStream().write(methodTable);
+            return null;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+        if (schemaFingerprint != null && !schemaFingerprint.equals(request.getHeader(SchemaFingerprint.HEADER_NAME))) {
+            response.setHeader(SchemaFingerprint.HEADER_NAME, schemaFingerprint);
+            response.sendError(409);
+            return null;
+        }
+        Long deadline = DeadlineContext.fromHeader(request.getHeader(DeadlineContext.HEADER_NAME), startTime);
+        if (DeadlineContext.isExpired(deadline)) {
+            response.sendError(504);
+            return null;
+        }
+        if (concurrencyLimiter == null) {
+            handleInvocation(request, response, startTime, deadline, null);
+            return null;
+        }
+        ConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            logger.debug("Rejecting request of {} over the concurrency limit of {}",
+                    serviceInterface.getName(), concurrencyLimiter.getLimit());
+            response.sendError(503);
+            return null;
+        }
+        try {
+            handleInvocation(request, response, startTime, deadline, permit);
+        } finally {
+            // Released by the asynchronous completion otherwise
+            if (!request.isAsyncStarted()) {
+                permit.release();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes and dispatches a single invocation or a batch of invocations.
+     *
+     * @param permit the permit of the request if it is limited, released when the response has been
+     *               written asynchronously, or <code>null</code>
+     */
+    private void handleInvocation(HttpServletRequest request, HttpServletResponse response, long startTime,
+                                  Long deadline, ConcurrencyLimiter.Permit permit) throws IOException {
+        InputStream content = request.getInputStream();
+        String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null) {
+            ContentCoding coding = ContentCoding.forToken(contentEncoding);
+            if (coding == null) {
+                response.sendError(415);
+                return;
+            }
+            content = coding.decode(content);
+        }
+        boolean stringRefs = CborMediaType.isStringRef(request.getHeader(HttpHeaders.ACCEPT));
+        CBORFactory responseFactory = stringRefs ? stringRefFactory : cborFactory;
+        response.setContentType(CborMediaType.forStringRefs(stringRefs));
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        ContentCoding responseCoding = null;
+        if (compressionThreshold >= 0) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            responseCoding = ContentCoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING), null);
+        }
+        String exceptionHash = exceptionRegistry.getHash();
+        ExceptionRegistry exceptionCodes = exceptionHash != null &&
+                exceptionHash.equals(request.getHeader(ExceptionRegistry.HEADER_NAME)) ? exceptionRegistry : null;
+        boolean methodIds = methodTableHash.equals(request.getHeader(ServiceSchema.HEADER_NAME));
+        try (CBORParser input = cborFactory.createParser(content)) {
             input.nextToken();
-            int arity = input.getValueAsInt();
-            Optional<Method> method = findMethod(methodName, arity);
-            if (method.isEmpty()) {
+            if (input.nextToken() == JsonToken.START_ARRAY) {
+                handleBatch(input, request, response, responseFactory, responseCoding, exceptionCodes,
+                        methodIds, startTime, deadline, permit);
+                return;
+            }
+            ServiceInvocation invocation = readInvocation(input, content, methodIds, startTime, startTime,
+                    deadline);
+            if (invocation.getMethod() == null) {
                 response.sendError(422);
-                return null;
+                return;
+            }
+            if (!invocation.getMethod().hasStreamingArgument()) {
+                invocation.getMethod().getMetrics().recordRequestSize(input.getCurrentLocation().getByteOffset());
+            }
+            CompletableFuture<Void> completion = start(invocation);
+            if (invocation.isRejected()) {
+                response.sendError(503);
+                return;
             }
-            Object[] args = new Object[arity];
-            for (int i = 0; i < arity; i++) {
-                JavaType argType = typeFactory.constructType(method.get().getGenericParameterTypes()[i]);
+            respond(request, response, responseFactory, responseCoding, completion, List.of(invocation),
+                    output -> writeResult(output, invocation, exceptionCodes), permit);
+        } catch (InvalidInvocationException e) {
+            logger.debug("Rejecting invocation: {}", e.getMessage());
+            response.setHeader(ServiceSchema.HEADER_NAME, methodTableHash);
+            response.sendError(e.getStatus(), e.getMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private void handleBatch(CBORParser input, HttpServletRequest request, HttpServletResponse response,
+                             CBORFactory responseFactory, ContentCoding responseCoding,
+                             ExceptionRegistry exceptionCodes, boolean methodIds, long startTime, Long deadline,
+                             ConcurrencyLimiter.Permit permit) throws IOException {
+        List<ServiceInvocation> invocations = new ArrayList<>();
+        do {
+            long decodeStart = System.nanoTime();
+            input.nextToken();
+            ServiceInvocation invocation = readInvocation(input, null, methodIds, startTime, decodeStart, deadline);
+            if (invocation.getMethod() == null) {
+                // Answered with its failure in its own frame, while the other invocations are run
+                while (input.nextToken() != JsonToken.END_ARRAY) {
+                    input.skipChildren();
+                }
+            } else {
                 input.nextToken();
-                args[i] = input.getCodec().readValue(input, argType);
             }
+            invocations.add(invocation);
+        } while (input.nextToken() == JsonToken.START_ARRAY);
+
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[invocations.size()];
+        for (int i = 0; i < completions.length; i++) {
+            ServiceInvocation invocation = invocations.get(i);
+            completions[i] = invocation.getMethod() == null ? CompletableFuture.completedFuture(null) :
+                    start(invocation);
+        }
+        respond(request, response, responseFactory, responseCoding, CompletableFuture.allOf(completions),
+                invocations, output -> {
+            output.writeStartArray(null, invocations.size());
+            for (ServiceInvocation invocation : invocations) {
+                writeResult(output, invocation, exceptionCodes);
+            }
+            output.writeEndArray();
+        }, permit);
+    }
+
+    /**
+     * Starts an invocation, on the configured executor if there is one. Invocations with a
+     * streaming argument are always run on the request thread, which reads the argument.
+     * <p>If the executor rejects the invocation, e.g. because its queue is full, the invocation is
+     * rejected with a {@link ServiceOverloadedException}, which a single invocation is answered with
+     * status 503 for.
+     */
+    private CompletableFuture<Void> start(ServiceInvocation invocation) {
+        if (executor == null || invocation.getMethod().hasStreamingArgument()) {
+            return invocation.invoke(service);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> invocation.invoke(service), executor)
+                    .thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            logger.debug("Rejecting invocation of {}: {}", serviceInterface.getName(), e.toString());
+            return invocation.reject(new ServiceOverloadedException("Executor of " +
+                    serviceInterface.getName() + " rejected invocation of " + invocation.getMethod().getMethod()));
+        }
+    }
+
+    /**
+     * Writes the response once the given invocations have completed, switching to
+     * asynchronous request processing if they have not completed yet.
+     *
+     * @param permit the permit of the request, to be released once the response has been written
+     *               asynchronously, or <code>null</code>
+     */
+    private void respond(HttpServletRequest request, HttpServletResponse response, CBORFactory responseFactory,
+                         ContentCoding responseCoding, CompletableFuture<Void> completion,
+                         List<ServiceInvocation> invocations, ResponseWriter writer,
+                         ConcurrencyLimiter.Permit permit) throws IOException {
+        if (completion.isDone()) {
+            completion.join();
+            writeResponse(response, responseFactory, responseCoding, invocations, writer);
+            return;
+        }
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(0);
+        completion.whenComplete((ignored, exception) -> {
             try {
-                Object ret = method.get().invoke(service, args);
-                try (CBORGenerator output = cborFactory.createGenerator(response.getOutputStream())) {
-                    output.writeStartArray();
-                    output.writeBoolean(true);
-                    if (!Void.class.equals(method.get().getReturnType())) {
-                        output.writeObject(ret);
-                    }
-                    output.writeEndArray();
+                if (exception != null) {
+                    logger.error("Invocation of {} failed", serviceInterface.getName(), exception);
+                    response.sendError(500);
+                } else {
+                    writeResponse(response, responseFactory, responseCoding, invocations, writer);
                 }
-                return null;
-            } catch (InvocationTargetException e) {
-                try (CBORGenerator output = cborFactory.createGenerator(response.getOutputStream())) {
-                    output.writeStartArray();
-                    output.writeBoolean(false);
-                    output.writeString(e.getCause().getClass().getName());
-                    output.writeObject(e.getCause());
-                    output.writeEndArray();
+            } catch (IOException e) {
+                logger.warn("Failed to write response of {}", serviceInterface.getName(), e);
+            } finally {
+                if (permit != null) {
+                    permit.release();
                 }
+                asyncContext.complete();
+            }
+        });
+    }
+
+    /**
+     * Writes the response, then records the metrics of the given invocations. The time spent
+     * writing and the uncompressed response size are only attributed to single invocations.
+     * <p>If the deadline of the request has passed, status 504 is sent instead, since the client
+     * has stopped waiting for the response.
+     */
+    private void writeResponse(HttpServletResponse response, CBORFactory responseFactory, ContentCoding responseCoding,
+                               List<ServiceInvocation> invocations, ResponseWriter writer) throws IOException {
+        if (invocations.get(0).isExpired()) {
+            logger.debug("Dropping response of {} past its deadline", serviceInterface.getName());
+            response.sendError(504);
+            return;
+        }
+        long encodeStart = System.nanoTime();
+        OutputStream outputStream = response.getOutputStream();
+        if (responseCoding != null) {
+            outputStream = new CompressingResponseStream(response, responseCoding, compressionThreshold);
+        }
+        CountingOutputStream counter = null;
+        if (metrics != RemotingMetrics.NONE) {
+            outputStream = counter = new CountingOutputStream(outputStream);
+        }
+        try (CBORGenerator output = responseFactory.createGenerator(outputStream)) {
+            // Only streaming results flush the response, see writeElements
+            output.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            writer.write(output);
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                throw e;
+            }
+            // Typically the client stopped reading a streaming result, nothing left to report to it
+            logger.warn("Failed to complete response of {}: {}", serviceInterface.getName(), e.toString());
+        }
+        if (counter != null) {
+            boolean single = invocations.size() == 1;
+            long encodeNanos = single ? System.nanoTime() - encodeStart : -1;
+            for (ServiceInvocation invocation : invocations) {
+                invocation.recordMetrics(encodeNanos, single ? counter.getCount() : -1);
+            }
+        }
+    }
+
+    /**
+     * Reads the method name or ID, arity and arguments of an invocation. A streaming argument is
+     * passed to the method as a live stream over the rest of the request content.
+     *
+     * @param content     the request content underlying the parser, or <code>null</code> if streaming
+     *                    arguments are not supported, as within batches
+     * @param methodIds   whether the client sent the hash of the method table, so that methods may be
+     *                    invoked by ID
+     * @param startTime   the {@link System#nanoTime()} at which the request started to be read
+     * @param decodeStart the {@link System#nanoTime()} at which the invocation started to be read
+     * @param deadline    the {@link System#nanoTime()} of the deadline sent by the client, or <code>null</code>
+     * @return the invocation, or an invocation without method failed with an {@link UnsupportedOperationException}
+     *         if the service has no such method or its streaming argument is not supported
+     */
+    private ServiceInvocation readInvocation(CBORParser input, InputStream content, boolean methodIds,
+                                             long startTime, long decodeStart, Long deadline) throws IOException {
+        ServiceMethod method;
+        String methodName;
+        if (input.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            if (!methodIds) {
+                throw new InvalidInvocationException(409, "Method table of " + serviceInterface.getName() +
+                        " differs from the one the client invokes methods by");
+            }
+            int id = input.getIntValue();
+            methodName = "with ID " + id;
+            input.nextToken();
+            method = findMethod(id, input.getValueAsInt());
+        } else {
+            methodName = input.getValueAsString();
+            input.nextToken();
+            method = findMethod(methodName, input.getValueAsInt());
+        }
+        if (method == null) {
+            return ServiceInvocation.unresolved(new UnsupportedOperationException(serviceInterface.getName() +
+                    " has no method " + methodName + " of arity " + input.getValueAsInt()),
+                    startTime, decodeStart, deadline);
+        }
+        if (method.hasStreamingArgument() && content == null) {
+            return ServiceInvocation.unresolved(new UnsupportedOperationException(method.getMethod() +
+                    " has a streaming argument, which cannot be batched"), startTime, decodeStart, deadline);
+        }
+        int arity = method.getArity();
+        int fixedArity = method.hasStreamingArgument() ? arity - 1 : arity;
+        Object[] args = new Object[arity];
+        for (int i = 0; i < fixedArity; i++) {
+            input.nextToken();
+            args[i] = method.getArgumentReader(i).readValue(input);
+        }
+        if (method.hasStreamingArgument()) {
+            args[fixedArity] = readStreamingArgument(input, content, method, fixedArity);
+        }
+        return new ServiceInvocation(method, args, startTime, decodeStart, deadline);
+    }
+
+    /**
+     * Opens a streaming argument: the elements of a {@link Stream} are read from the parser
+     * as they are consumed, while the bytes of an {@link InputStream} or {@link ReadableByteChannel}
+     * are read from the request content, following whatever the parser has buffered already.
+     */
+    private Object readStreamingArgument(CBORParser input, InputStream content,
+                                         ServiceMethod method, int index) throws IOException {
+        Class<?> type = method.getMethod().getParameterTypes()[index];
+        if (Stream.class.equals(type)) {
+            if (input.nextToken() == JsonToken.VALUE_NULL) {
                 return null;
             }
-        } catch (IllegalAccessException | IOException e) {
-            throw new IllegalArgumentException(e.getMessage(), e);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                    new ArgumentElementIterator(input, method.getArgumentReader(index)), Spliterator.ORDERED), false);
         }
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+        input.releaseBuffered(buffered);
+        InputStream bytes = CborStreams.readByteString(
+                new SequenceInputStream(new ByteArrayInputStream(buffered.toByteArray()), content));
+        return bytes == null || InputStream.class.equals(type) ? bytes : Channels.newChannel(bytes);
     }
 
-    private Optional<Method> findMethod(String methodName, int arity) {
-        return Arrays.stream(serviceInterface.getMethods())
-                .filter(m -> m.getName().equals(methodName))
-                .filter(m -> m.getParameterCount() == arity)
-                .findFirst();
+    /**
+     * @param exceptionCodes the registry to write declared exceptions with their code by, or <code>null</code>
+     *                       to write all exceptions with their class name
+     */
+    private void writeResult(CBORGenerator output, ServiceInvocation invocation,
+                             ExceptionRegistry exceptionCodes) throws IOException {
+        output.writeStartArray();
+        if (invocation.getException() == null) {
+            output.writeBoolean(true);
+            ObjectWriter resultWriter = invocation.getMethod().getResultWriter();
+            if (invocation.getMethod().isStreaming() && invocation.getResult() != null) {
+                writeElements(output, resultWriter, invocation.getResult(), exceptionCodes);
+            } else if (resultWriter != null) {
+                resultWriter.writeValue(output, invocation.getResult());
+            }
+        } else {
+            output.writeBoolean(false);
+            writeException(output, invocation.getException(), exceptionCodes);
+        }
+        output.writeEndArray();
+    }
+
+    /**
+     * Writes the elements of a streaming result as an indefinite-length array while they are
+     * produced, flushing the response after the first one, which also starts compressing it. If producing an element fails, the array is ended
+     * and the exception follows it, turning the frame into
+     * <code>[true, [elements...], exceptionClass, exception]</code>.
+     */
+    private void writeElements(CBORGenerator output, ObjectWriter elementWriter, Object result,
+                               ExceptionRegistry exceptionCodes) throws IOException {
+        output.writeStartArray();
+        RuntimeException failure = null;
+        try {
+            Iterator<?> elements = result instanceof Iterator ? (Iterator<?>) result :
+                    result instanceof Stream ? ((Stream<?>) result).iterator() : ((Iterable<?>) result).iterator();
+            boolean first = true;
+            while (elements.hasNext()) {
+                elementWriter.writeValue(output, elements.next());
+                if (first) {
+                    output.flush();
+                    ((OutputStream) output.getOutputTarget()).flush();
+                    first = false;
+                }
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            if (result instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) result).close();
+                } catch (Exception e) {
+                    logger.warn("Failed to close streaming result of {}", serviceInterface.getName(), e);
+                }
+            }
+        }
+        output.writeEndArray();
+        if (failure != null) {
+            writeException(output, failure, exceptionCodes);
+        }
+    }
+
+    private void writeException(CBORGenerator output, Throwable exception,
+                                ExceptionRegistry exceptionCodes) throws IOException {
+        int code = exceptionCodes != null ? exceptionCodes.getCode(exception.getClass()) : -1;
+        if (code >= 0) {
+            output.writeNumber(code);
+            exceptionCodes.getWriter(code).writeValue(output, exception);
+        } else {
+            output.writeString(exception.getClass().getName());
+            output.writeObject(exception);
+        }
+    }
+
+    private ServiceMethod findMethod(int id, int arity) {
+        if (id < 0 || id >= methodsById.length || methodsById[id].getArity() != arity) {
+            return null;
+        }
+        return methodsById[id];
+    }
+
+    private ServiceMethod findMethod(String methodName, int arity) {
+        ServiceMethod[] byArity = methodsByName.get(methodName);
+        if (byArity == null || arity < 0 || arity >= byArity.length) {
+            return null;
+        }
+        if (byArity[arity] == null && ambiguousMethods.contains(methodName + '/' + arity)) {
+            throw new InvalidInvocationException(400, serviceInterface.getName() + "." + methodName +
+                    " has several overloads of arity " + arity + ", which can only be invoked by method ID");
+        }
+        return byArity[arity];
+    }
+
+    /**
+     * Thrown if an invocation names a method which has several overloads of the same arity (400),
+     * or invokes a method by an ID from another method table than the one of the service (409).
+     */
+    private static class InvalidInvocationException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        InvalidInvocationException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Iterator reading the elements of a streaming {@link Stream} argument from the request.
+     */
+    private static class ArgumentElementIterator implements Iterator<Object> {
+
+        private final CBORParser input;
+        private final ObjectReader elementReader;
+        private boolean advanced;
+        private boolean finished;
+
+        ArgumentElementIterator(CBORParser input, ObjectReader elementReader) {
+            this.input = input;
+            this.elementReader = elementReader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!advanced && !finished) {
+                advanced = true;
+                try {
+                    finished = input.nextToken() == JsonToken.END_ARRAY;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return !finished;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            advanced = false;
+            try {
+                return elementReader.readValue(input);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseWriter {
+
+        void write(CBORGenerator output) throws IOException;
     }
 }
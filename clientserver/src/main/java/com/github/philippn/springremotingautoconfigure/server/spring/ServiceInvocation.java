@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.server.spring;
+
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationMetrics;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationPhase;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineContext;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineExceededException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A decoded invocation of a service method together with its outcome.
+ *
+ * @author Philipp Nanz
+ */
+class ServiceInvocation {
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final ServiceMethod method;
+    private final Object[] arguments;
+    private final long startTime;
+    private final long decodeNanos;
+    private final Long deadline;
+    private long invokeNanos;
+    private Object result;
+    private Throwable exception;
+    private boolean rejected;
+
+    /**
+     * @param startTime   the {@link System#nanoTime()} at which the request started to be read
+     * @param decodeStart the {@link System#nanoTime()} at which the invocation started to be read
+     * @param deadline    the {@link System#nanoTime()} of the deadline sent by the client, or <code>null</code>
+     */
+    ServiceInvocation(ServiceMethod method, Object[] arguments, long startTime, long decodeStart, Long deadline) {
+        this.method = method;
+        this.arguments = arguments;
+        this.startTime = startTime;
+        this.decodeNanos = System.nanoTime() - decodeStart;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates an invocation which could not be resolved to a method of the service, e.g. because the
+     * service has no method of the name and arity, failed with the given exception.
+     */
+    static ServiceInvocation unresolved(Throwable exception, long startTime, long decodeStart, Long deadline) {
+        ServiceInvocation invocation = new ServiceInvocation(null, null, startTime, decodeStart, deadline);
+        invocation.exception = exception;
+        return invocation;
+    }
+
+    /**
+     * Rejects the invocation without invoking the method, e.g. because the executor to run it on is full.
+     *
+     * @return a completed future, like {@link #invoke(Object)}
+     */
+    CompletableFuture<Void> reject(Throwable exception) {
+        this.exception = exception;
+        this.rejected = true;
+        return COMPLETED;
+    }
+
+    /**
+     * @return whether the invocation has been rejected without invoking the method
+     */
+    boolean isRejected() {
+        return rejected;
+    }
+
+    /**
+     * Invokes the method on the given service, capturing its result or the exception it has thrown.
+     * For asynchronous methods, the outcome is captured once the returned stage completes.
+     * <p>The method runs with the deadline of the invocation, which carries over to nested remote
+     * invocations. It is not invoked at all if the deadline has already passed.
+     *
+     * @return a future completing once the outcome has been captured
+     */
+    CompletableFuture<Void> invoke(Object service) {
+        if (isExpired()) {
+            exception = new DeadlineExceededException("Deadline passed before invocation of " + method.getMethod());
+            return COMPLETED;
+        }
+        long invokeStart = System.nanoTime();
+        Object value;
+        DeadlineContext.Scope scope = DeadlineContext.withDeadline(deadline);
+        try (scope) {
+            value = method.getMethod().invoke(service, arguments);
+        } catch (InvocationTargetException e) {
+            exception = e.getCause();
+            invokeNanos = System.nanoTime() - invokeStart;
+            return COMPLETED;
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        if (method.isAsynchronous() && value != null) {
+            return ((CompletionStage<?>) value).handle((stageResult, stageException) -> {
+                if (stageException != null) {
+                    exception = stageException instanceof CompletionException && stageException.getCause() != null ?
+                            stageException.getCause() : stageException;
+                } else {
+                    result = stageResult;
+                }
+                invokeNanos = System.nanoTime() - invokeStart;
+                return (Void) null;
+            }).toCompletableFuture();
+        }
+        result = value;
+        invokeNanos = System.nanoTime() - invokeStart;
+        return COMPLETED;
+    }
+
+    /**
+     * Records the metrics of the invocation once its response has been written.
+     *
+     * @param encodeNanos  the time spent writing the response, or a negative value if the
+     *                     response is shared with other invocations, as within batches
+     * @param responseSize the size of the response, or a negative value if it is shared
+     */
+    void recordMetrics(long encodeNanos, long responseSize) {
+        if (method == null) {
+            return;
+        }
+        InvocationMetrics metrics = method.getMetrics();
+        metrics.recordPhase(InvocationPhase.DECODE, decodeNanos);
+        metrics.recordPhase(InvocationPhase.INVOKE, invokeNanos);
+        if (encodeNanos >= 0) {
+            metrics.recordPhase(InvocationPhase.ENCODE, encodeNanos);
+        }
+        if (responseSize >= 0) {
+            metrics.recordResponseSize(responseSize);
+        }
+        metrics.recordCall(System.nanoTime() - startTime, exception);
+    }
+
+    /**
+     * @return whether the deadline sent by the client has passed
+     */
+    boolean isExpired() {
+        return DeadlineContext.isExpired(deadline);
+    }
+
+    /**
+     * @return the invoked method, or <code>null</code> if the invocation could not be resolved to one
+     */
+    ServiceMethod getMethod() {
+        return method;
+    }
+
+    Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the exception thrown by the method, or <code>null</code> if it completed normally
+     */
+    Throwable getException() {
+        return exception;
+    }
+}
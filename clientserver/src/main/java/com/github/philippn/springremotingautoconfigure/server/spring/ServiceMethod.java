@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.server.spring;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.philippn.springremotingautoconfigure.metrics.InvocationMetrics;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.stream.Stream;
+
+/**
+ * Invocation metadata of a single exported service method, resolved once
+ * when the {@link RemotingController} is initialized.
+ *
+ * @author Philipp Nanz
+ */
+class ServiceMethod {
+
+    private final Method method;
+    private final ObjectReader[] argumentReaders;
+    private final ObjectWriter resultWriter;
+    private final boolean asynchronous;
+    private final boolean streaming;
+    private final boolean streamingArgument;
+    private final InvocationMetrics metrics;
+
+    ServiceMethod(Method method, ObjectMapper mapper, InvocationMetrics metrics) {
+        this.method = method;
+        this.metrics = metrics;
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        this.argumentReaders = new ObjectReader[parameterTypes.length];
+        this.streamingArgument = RemotingUtils.hasStreamingArgument(method);
+        int fixedArity = streamingArgument ? parameterTypes.length - 1 : parameterTypes.length;
+        for (int i = 0; i < fixedArity; i++) {
+            argumentReaders[i] = mapper.readerFor(mapper.getTypeFactory().constructType(parameterTypes[i]));
+        }
+        if (streamingArgument && Stream.class.equals(method.getParameterTypes()[fixedArity])) {
+            argumentReaders[fixedArity] = mapper.readerFor(mapper.getTypeFactory()
+                    .constructType(parameterTypes[fixedArity]).containedTypeOrUnknown(0));
+        }
+        JavaType resultType = RemotingUtils.resolveResultType(mapper.getTypeFactory(), method);
+        this.asynchronous = RemotingUtils.isAsynchronous(method);
+        this.streaming = RemotingUtils.isStreaming(method);
+        if (resultType.hasRawClass(Void.class)) {
+            this.resultWriter = null;
+        } else if (streaming) {
+            // Let elements accumulate in the output buffers instead of flushing each one
+            this.resultWriter = RemotingUtils.writerFor(mapper, resultType)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        } else {
+            this.resultWriter = RemotingUtils.writerFor(mapper, resultType);
+        }
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    int getArity() {
+        return argumentReaders.length;
+    }
+
+    /**
+     * @return whether the last argument is an {@link java.io.InputStream},
+     * {@link java.nio.channels.ReadableByteChannel} or {@link Stream} read while it is received
+     */
+    boolean hasStreamingArgument() {
+        return streamingArgument;
+    }
+
+    /**
+     * @return the reader for the argument at the given index, for the elements of a streaming
+     * {@link Stream} argument, or <code>null</code> for a streaming byte argument
+     */
+    ObjectReader getArgumentReader(int index) {
+        return argumentReaders[index];
+    }
+
+    /**
+     * @return whether the method returns a {@link java.util.concurrent.CompletionStage} of its result
+     */
+    boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * @return whether the method returns a {@link java.util.stream.Stream}, {@link java.util.Iterator}
+     * or {@link Iterable} whose elements are written one by one
+     */
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return the writer for the result, or for its elements if the method is streaming,
+     * or <code>null</code> if the method returns {@link Void}
+     */
+    ObjectWriter getResultWriter() {
+        return resultWriter;
+    }
+
+    InvocationMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of fixed-capacity in-memory buffers.
+ *
+ * @author Philipp Nanz
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<Buffer> buffers;
+
+    /**
+     * @param bufferSize the capacity of each buffer in bytes
+     * @param maxPooled the maximum number of idle buffers retained by the pool
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public Buffer acquire() {
+        Buffer buffer = buffers.poll();
+        return buffer != null ? buffer : new Buffer(bufferSize);
+    }
+
+    public void release(Buffer buffer) {
+        buffer.reset();
+        buffers.offer(buffer);
+    }
+
+    /**
+     * An output stream writing into a fixed-capacity byte array. Writes exceeding
+     * the capacity fail with an {@link IOException} and mark the buffer as overflowed.
+     */
+    public static class Buffer extends OutputStream {
+
+        private final byte[] bytes;
+        private int count;
+        private boolean overflowed;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (len > bytes.length - count) {
+                overflowed = true;
+                throw new IOException("Buffer capacity of " + bytes.length + " bytes exceeded");
+            }
+        }
+
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(bytes, 0, count);
+        }
+
+        public InputStream asInputStream() {
+            return new ByteArrayInputStream(bytes, 0, count);
+        }
+
+        void reset() {
+            count = 0;
+            overflowed = false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Media types of request and response bodies. Bodies using the CBOR stringref extension, which
+ * writes repeated strings as references to their first occurrence, are marked by the
+ * <code>stringref</code> parameter, so that they are only sent to peers asking for them.
+ *
+ * @author Philipp Nanz
+ */
+public final class CborMediaType {
+
+    public static final String CBOR = "application/cbor";
+
+    public static final String CBOR_STRINGREF = CBOR + ";stringref=1";
+
+    private static final MediaType APPLICATION_CBOR = MediaType.parseMediaType(CBOR);
+
+    private CborMediaType() {
+    }
+
+    /**
+     * @return the media type of bodies written with or without string references
+     */
+    public static String forStringRefs(boolean stringRefs) {
+        return stringRefs ? CBOR_STRINGREF : CBOR;
+    }
+
+    /**
+     * Checks whether a <code>Content-Type</code> or <code>Accept</code> header value names
+     * CBOR with string references. Malformed values are treated as plain CBOR.
+     */
+    public static boolean isStringRef(String header) {
+        if (header == null || !header.contains("stringref")) {
+            return false;
+        }
+        try {
+            return MediaType.parseMediaTypes(header).stream().anyMatch(type ->
+                    APPLICATION_CBOR.includes(type) && "1".equals(type.getParameter("stringref")));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Low-level CBOR encoding helpers for data written around a generator, such as byte strings
+ * streamed in chunks of unknown total length.
+ *
+ * @author Philipp Nanz
+ */
+public class CborStreams {
+
+    public static final int MAJOR_TYPE_BYTE_STRING = 2;
+    public static final int MAJOR_TYPE_ARRAY = 4;
+
+    private static final int INDEFINITE_BYTE_STRING = 0x5f;
+    private static final int BREAK = 0xff;
+    private static final int NULL = 0xf6;
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Writes the head of a data item of the given major type and length.
+     */
+    public static void writeHeader(OutputStream outputStream, int majorType, int length) throws IOException {
+        int type = majorType << 5;
+        if (length < 24) {
+            outputStream.write(type | length);
+        } else if (length < 0x100) {
+            outputStream.write(type | 24);
+            outputStream.write(length);
+        } else if (length < 0x10000) {
+            outputStream.write(type | 25);
+            outputStream.write(length >> 8);
+            outputStream.write(length);
+        } else {
+            outputStream.write(type | 26);
+            outputStream.write(length >> 24);
+            outputStream.write(length >> 16);
+            outputStream.write(length >> 8);
+            outputStream.write(length);
+        }
+    }
+
+    /**
+     * Writes the content of the given stream as an indefinite-length byte string, or
+     * <code>null</code> if there is no stream. The stream is read to its end but not closed.
+     */
+    public static void writeByteString(InputStream inputStream, OutputStream outputStream) throws IOException {
+        if (inputStream == null) {
+            outputStream.write(NULL);
+            return;
+        }
+        outputStream.write(INDEFINITE_BYTE_STRING);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length;
+        while ((length = inputStream.read(chunk)) >= 0) {
+            if (length > 0) {
+                writeHeader(outputStream, MAJOR_TYPE_BYTE_STRING, length);
+                outputStream.write(chunk, 0, length);
+            }
+        }
+        outputStream.write(BREAK);
+    }
+
+    /**
+     * Opens a stream reading the content of a byte string of definite or indefinite length
+     * while it is received.
+     *
+     * @return the stream, or <code>null</code> if the data item is <code>null</code>
+     * @throws IOException if the data item is neither a byte string nor <code>null</code>
+     */
+    public static InputStream readByteString(InputStream inputStream) throws IOException {
+        int initial = inputStream.read();
+        if (initial == NULL) {
+            return null;
+        }
+        if (initial == INDEFINITE_BYTE_STRING) {
+            return new ByteStringInputStream(inputStream, true, 0);
+        }
+        if (initial >> 5 == MAJOR_TYPE_BYTE_STRING) {
+            return new ByteStringInputStream(inputStream, false, readLength(inputStream, initial));
+        }
+        throw new IOException("Expected byte string, found initial byte " + initial);
+    }
+
+    private static long readLength(InputStream inputStream, int initial) throws IOException {
+        int info = initial & 0x1f;
+        if (info < 24) {
+            return info;
+        }
+        int bytes;
+        switch (info) {
+            case 24: bytes = 1; break;
+            case 25: bytes = 2; break;
+            case 26: bytes = 4; break;
+            case 27: bytes = 8; break;
+            default: throw new IOException("Unsupported length encoding " + info);
+        }
+        long length = 0;
+        for (int i = 0; i < bytes; i++) {
+            length = (length << 8) | readByte(inputStream);
+        }
+        return length;
+    }
+
+    private static int readByte(InputStream inputStream) throws IOException {
+        int b = inputStream.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of byte string");
+        }
+        return b;
+    }
+
+    /**
+     * Reads the chunks of a byte string from the underlying stream, leaving whatever follows it unread.
+     */
+    private static class ByteStringInputStream extends InputStream {
+
+        private final InputStream inputStream;
+        private final boolean chunked;
+        private long remaining;
+        private boolean finished;
+
+        ByteStringInputStream(InputStream inputStream, boolean chunked, long length) {
+            this.inputStream = inputStream;
+            this.chunked = chunked;
+            this.remaining = length;
+            this.finished = !chunked && length == 0;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (remaining == 0 && !finished) {
+                if (!chunked) {
+                    finished = true;
+                    break;
+                }
+                int initial = readByte(inputStream);
+                if (initial == BREAK) {
+                    finished = true;
+                } else if (initial >> 5 == MAJOR_TYPE_BYTE_STRING && initial != INDEFINITE_BYTE_STRING) {
+                    remaining = readLength(inputStream, initial);
+                } else {
+                    throw new IOException("Expected byte string chunk, found initial byte " + initial);
+                }
+            }
+            return !finished;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int b = readByte(inputStream);
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int read = inputStream.read(b, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of byte string");
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content codings for compressing request and response bodies. <code>gzip</code> and
+ * <code>deflate</code> are always available, <code>lz4</code> only if lz4-java is on the classpath.
+ *
+ * @author Philipp Nanz
+ */
+public enum ContentCoding {
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream encode(OutputStream outputStream) throws IOException {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE, true);
+        }
+
+        @Override
+        public InputStream decode(InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        public OutputStream encode(OutputStream outputStream) {
+            return new DeflaterOutputStream(outputStream, true);
+        }
+
+        @Override
+        public InputStream decode(InputStream inputStream) {
+            return new InflaterInputStream(inputStream);
+        }
+    },
+
+    LZ4("lz4") {
+        @Override
+        public OutputStream encode(OutputStream outputStream) throws IOException {
+            return Lz4.encode(outputStream);
+        }
+
+        @Override
+        public InputStream decode(InputStream inputStream) throws IOException {
+            return Lz4.decode(inputStream);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return LZ4_PRESENT;
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final boolean LZ4_PRESENT =
+            ClassUtils.isPresent("net.jpountz.lz4.LZ4FrameOutputStream", ContentCoding.class.getClassLoader());
+
+    private final String token;
+
+    ContentCoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return the token identifying this coding in <code>Content-Encoding</code> and <code>Accept-Encoding</code> headers
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return whether this coding can be used
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Wraps the given stream so that everything written is compressed. Flushing the returned stream
+     * flushes everything written so far, so that it can be decompressed by the receiver; it must be
+     * closed to write the trailer of the compressed data.
+     */
+    public abstract OutputStream encode(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wraps the given stream so that compressed data is decompressed when read.
+     */
+    public abstract InputStream decode(InputStream inputStream) throws IOException;
+
+    /**
+     * @return the available coding with the given token, or <code>null</code> if there is none
+     */
+    public static ContentCoding forToken(String token) {
+        String normalized = token.trim().toLowerCase(Locale.ROOT);
+        for (ContentCoding coding : values()) {
+            if (coding.token.equals(normalized) && coding.isAvailable()) {
+                return coding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the given stream according to a <code>Content-Encoding</code> header value.
+     *
+     * @throws IOException if the content encoding is not supported
+     */
+    public static InputStream decode(String contentEncoding, InputStream inputStream) throws IOException {
+        if (contentEncoding == null || contentEncoding.isEmpty() || "identity".equalsIgnoreCase(contentEncoding)) {
+            return inputStream;
+        }
+        ContentCoding coding = forToken(contentEncoding);
+        if (coding == null) {
+            throw new IOException("Unsupported content encoding: " + contentEncoding);
+        }
+        return coding.decode(inputStream);
+    }
+
+    /**
+     * Builds an <code>Accept-Encoding</code> header value listing all available codings,
+     * starting with the preferred one if given.
+     */
+    public static String acceptEncoding(ContentCoding preferred) {
+        List<String> tokens = new ArrayList<>();
+        if (preferred != null && preferred.isAvailable()) {
+            tokens.add(preferred.token);
+        }
+        for (ContentCoding coding : values()) {
+            if (coding != preferred && coding.isAvailable()) {
+                tokens.add(coding.token);
+            }
+        }
+        return String.join(", ", tokens);
+    }
+
+    /**
+     * Selects a coding listed by an <code>Accept-Encoding</code> header value, ignoring codings
+     * refused with <code>q=0</code>. The preferred coding is selected if listed, the first
+     * available listed coding otherwise.
+     *
+     * @param preferred the preferred coding, may be <code>null</code>
+     * @return the selected coding, or <code>null</code> if none of the listed codings is available
+     */
+    public static ContentCoding negotiate(String acceptEncoding, ContentCoding preferred) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        ContentCoding selected = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parameters = element.split(";");
+            if (parameters.length > 1 && isRefused(parameters[1])) {
+                continue;
+            }
+            ContentCoding coding = forToken(parameters[0]);
+            if (coding != null && (coding == preferred || preferred == null)) {
+                return coding;
+            }
+            if (selected == null) {
+                selected = coding;
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isRefused(String parameter) {
+        String[] nameAndValue = parameter.split("=");
+        if (nameAndValue.length != 2 || !"q".equalsIgnoreCase(nameAndValue[0].trim())) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(nameAndValue[1].trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Keeps references to lz4-java out of the enum, so that it loads without lz4-java on the classpath.
+     */
+    private static class Lz4 {
+
+        static OutputStream encode(OutputStream outputStream) throws IOException {
+            return new LZ4FrameOutputStream(outputStream);
+        }
+
+        static InputStream decode(InputStream inputStream) throws IOException {
+            return new LZ4FrameInputStream(inputStream);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the deadline of the remote invocations made by the current thread. Proxies send the time
+ * remaining until the deadline in the {@link #HEADER_NAME} header, and exported services run with
+ * the deadline of the request they serve, so that it carries over to nested remote invocations.
+ * <p>Deadlines are {@link System#nanoTime()} values. Nested scopes can only shorten a deadline:
+ * <pre>
+ * try (DeadlineContext.Scope scope = DeadlineContext.withTimeout(200, TimeUnit.MILLISECONDS)) {
+ *     service.call();
+ * }
+ * </pre>
+ *
+ * @author Philipp Nanz
+ */
+public final class DeadlineContext {
+
+    public static final String HEADER_NAME = "X-Remoting-Deadline";
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private DeadlineContext() {
+    }
+
+    /**
+     * Sets a deadline for the remote invocations of the current thread, the given time from now,
+     * unless the current deadline is earlier.
+     *
+     * @return the scope, which restores the previous deadline when closed
+     */
+    public static Scope withTimeout(long timeout, TimeUnit unit) {
+        return withDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Sets a deadline for the remote invocations of the current thread, unless the current
+     * deadline is earlier.
+     *
+     * @param deadline the {@link System#nanoTime()} of the deadline, or <code>null</code> to keep the current one
+     * @return the scope, which restores the previous deadline when closed
+     */
+    public static Scope withDeadline(Long deadline) {
+        Long previous = DEADLINE.get();
+        if (deadline != null && (previous == null || deadline - previous < 0)) {
+            DEADLINE.set(deadline);
+        }
+        return new Scope(previous);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the deadline of the current thread, or <code>null</code> if it has none
+     */
+    public static Long getDeadline() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * @return whether the given deadline has passed, <code>false</code> for no deadline
+     */
+    public static boolean isExpired(Long deadline) {
+        return deadline != null && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @return the time in nanoseconds remaining until the given deadline, at most {@link Long#MAX_VALUE}
+     * for no deadline
+     */
+    public static long remainingNanos(Long deadline) {
+        return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    /**
+     * @return the header value for the given deadline, i.e. the remaining milliseconds, rounded up
+     */
+    public static String toHeader(Long deadline) {
+        long remaining = Math.max(remainingNanos(deadline), 0);
+        return Long.toString(TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * @param value     the header value, may be <code>null</code>
+     * @param startTime the {@link System#nanoTime()} at which the request was received
+     * @return the {@link System#nanoTime()} of the deadline, or <code>null</code> if the header is missing or invalid
+     */
+    public static Long fromHeader(String value, long startTime) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return startTime + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scope of a deadline, restoring the previous deadline of the thread when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Long previous;
+
+        private Scope(Long previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hashing;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the exceptions declared by the methods of a remote service, which assigns them
+ * compact codes to transport them by instead of their class names. Codes are the positions of
+ * the exception classes ordered by name, and the hash covers all names, so that peers with
+ * identical interfaces agree on them without any coordination. Clients send the hash with each
+ * request, and servers only use codes if it matches their own.
+ * <p>Readers and writers are resolved once per exception class, so that failed invocations
+ * decode about as fast as successful ones.
+ *
+ * @author Philipp Nanz
+ */
+public class ExceptionRegistry {
+
+    /**
+     * Name of the request header carrying the hash.
+     */
+    public static final String HEADER_NAME = "X-Remoting-Exceptions";
+
+    private final ObjectMapper mapper;
+    private final Class<?>[] exceptionClasses;
+    private final Map<Class<?>, Integer> codes = new HashMap<>();
+    private final ObjectReader[] readers;
+    private final ObjectWriter[] writers;
+    private final Map<String, ObjectReader> readersByName = new ConcurrentHashMap<>();
+    private final String hash;
+
+    public ExceptionRegistry(Class<?> serviceInterface, ObjectMapper mapper) {
+        this.mapper = mapper;
+        TreeSet<Class<?>> declared = new TreeSet<>(Comparator.comparing(Class::getName));
+        for (Method method : serviceInterface.getMethods()) {
+            declared.addAll(List.of(method.getExceptionTypes()));
+        }
+        this.exceptionClasses = declared.toArray(new Class<?>[0]);
+        this.readers = new ObjectReader[exceptionClasses.length];
+        this.writers = new ObjectWriter[exceptionClasses.length];
+        StringBuilder names = new StringBuilder();
+        for (int code = 0; code < exceptionClasses.length; code++) {
+            codes.put(exceptionClasses[code], code);
+            readers[code] = mapper.readerFor(exceptionClasses[code]);
+            writers[code] = mapper.writerFor(exceptionClasses[code]);
+            names.append(exceptionClasses[code].getName()).append('\n');
+        }
+        this.hash = exceptionClasses.length == 0 ? null :
+                Hashing.sha256().hashString(names, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
+    /**
+     * @return the hash of the registered exception classes, or <code>null</code> if the service
+     * declares no exceptions
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the code of the given exception class, or a negative value if it is not registered,
+     * which is the case for subclasses of declared exceptions as well
+     */
+    public int getCode(Class<?> exceptionClass) {
+        Integer code = codes.get(exceptionClass);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * @return the writer of the exception class with the given code
+     */
+    public ObjectWriter getWriter(int code) {
+        return writers[code];
+    }
+
+    /**
+     * @return the reader of the exception class with the given code, or <code>null</code> if
+     * there is no such code
+     */
+    public ObjectReader getReader(int code) {
+        return code >= 0 && code < readers.length ? readers[code] : null;
+    }
+
+    /**
+     * @return the reader of the exception class with the given name, which is cached once the
+     * class has been loaded
+     * @throws ClassNotFoundException if there is no such class
+     */
+    public ObjectReader getReader(String exceptionClassName) throws ClassNotFoundException {
+        ObjectReader reader = readersByName.get(exceptionClassName);
+        if (reader == null) {
+            reader = mapper.readerFor(Class.forName(exceptionClassName));
+            readersByName.put(exceptionClassName, reader);
+        }
+        return reader;
+    }
+}
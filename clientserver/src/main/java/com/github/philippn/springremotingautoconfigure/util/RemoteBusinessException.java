@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+/**
+ * Base class of checked exceptions that report expected business outcomes rather than failures,
+ * e.g. that an entity was not found. Neither the stack trace nor suppressed exceptions are
+ * captured, neither when the service throws the exception nor when the client decodes it, so
+ * that such outcomes cost about as much as a regular result. Subclasses need a constructor
+ * taking the message to be decoded by clients.
+ *
+ * @author Philipp Nanz
+ */
+public abstract class RemoteBusinessException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    protected RemoteBusinessException(String message) {
+        super(message, null, false, false);
+    }
+
+    protected RemoteBusinessException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -15,10 +15,24 @@
  */
 package com.github.philippn.springremotingautoconfigure.util;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.PropertyResolver;
 
 import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
 
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
 /**
  * @author Philipp Nanz
  */
@@ -32,4 +46,84 @@ public class RemotingUtils {
         }
         return "/remoting/" + serviceInterface.getSimpleName();
     }
+
+    /**
+     * Resolves a client-side property of the given service. The global property
+     * <code>remote.&lt;key&gt;</code> may be overridden per service using the property
+     * <code>remote.services.&lt;InterfaceName&gt;.&lt;key&gt;</code>, where the interface name is
+     * the simple name of the service interface.
+     */
+    public static <T> T getServiceProperty(PropertyResolver propertyResolver, Class<?> serviceInterface,
+                                           String key, Class<T> targetType, T defaultValue) {
+        T value = propertyResolver.getProperty(
+                "remote.services." + serviceInterface.getSimpleName() + "." + key, targetType);
+        if (value != null) {
+            return value;
+        }
+        return propertyResolver.getProperty("remote." + key, targetType, defaultValue);
+    }
+
+    /**
+     * Returns a writer bound to the given declared type where this is safe, i.e. where
+     * the runtime type of a value cannot differ from it. Otherwise the returned writer
+     * serializes values based on their runtime type.
+     */
+    public static ObjectWriter writerFor(ObjectMapper mapper, Type declaredType) {
+        return writerFor(mapper, mapper.getTypeFactory().constructType(declaredType));
+    }
+
+    /**
+     * @see #writerFor(ObjectMapper, Type)
+     */
+    public static ObjectWriter writerFor(ObjectMapper mapper, JavaType type) {
+        if (type.isPrimitive() || type.isFinal()) {
+            return mapper.writerFor(type);
+        }
+        return mapper.writer();
+    }
+
+    /**
+     * Returns whether the given method completes asynchronously, i.e. returns a
+     * {@link CompletableFuture} or {@link CompletionStage}.
+     */
+    public static boolean isAsynchronous(Method method) {
+        return CompletableFuture.class.equals(method.getReturnType()) ||
+                CompletionStage.class.equals(method.getReturnType());
+    }
+
+    /**
+     * Returns whether the given method returns a {@link Stream}, {@link Iterator} or {@link Iterable},
+     * whose elements are transferred one by one as they are produced.
+     */
+    public static boolean isStreaming(Method method) {
+        return Stream.class.equals(method.getReturnType()) ||
+                Iterator.class.equals(method.getReturnType()) ||
+                Iterable.class.equals(method.getReturnType());
+    }
+
+    /**
+     * Returns whether the last parameter of the given method is an {@link InputStream},
+     * {@link ReadableByteChannel} or {@link Stream}, whose content is transferred while it is read.
+     */
+    public static boolean hasStreamingArgument(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length == 0) {
+            return false;
+        }
+        Class<?> last = parameterTypes[parameterTypes.length - 1];
+        return InputStream.class.equals(last) || ReadableByteChannel.class.equals(last) || Stream.class.equals(last);
+    }
+
+    /**
+     * Resolves the type of the result of the given method, which is the type the returned
+     * stage completes with for asynchronous methods, the element type for streaming methods
+     * and the return type otherwise.
+     */
+    public static JavaType resolveResultType(TypeFactory typeFactory, Method method) {
+        JavaType type = typeFactory.constructType(method.getGenericReturnType());
+        if (isAsynchronous(method) || isStreaming(method)) {
+            return type.containedTypeOrUnknown(0);
+        }
+        return type;
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.util;
+
+import com.google.common.hash.Hashing;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Method table of a remote service, exchanged in the handshake by which proxies learn the
+ * numeric IDs to invoke methods by. IDs are the positions of the methods ordered by their
+ * signatures, and the schema hash covers all signatures, so that peers with identical
+ * interfaces agree on them without any coordination. Clients send the hash of the table they
+ * invoke methods by with each request, and servers reject invocations by ID if it does not
+ * match their own, naming their own hash in the response.
+ *
+ * @author Philipp Nanz
+ */
+public class ServiceSchema {
+
+    /**
+     * Name of the header carrying the schema hash.
+     */
+    public static final String HEADER_NAME = "X-Remoting-Methods";
+
+    private static final String SCHEMA = "schema";
+    private static final String METHODS = "methods";
+    private static final String ID = "id";
+    private static final String SIGNATURE = "signature";
+
+    private final List<Method> methods;
+    private final List<String> signatures;
+    private final String hash;
+
+    public ServiceSchema(Class<?> serviceInterface) {
+        Method[] sorted = serviceInterface.getMethods();
+        Arrays.sort(sorted, Comparator.comparing(ServiceSchema::signature));
+        this.methods = List.of(sorted);
+        this.signatures = methods.stream().map(ServiceSchema::signature).toList();
+        this.hash = hash(signatures);
+    }
+
+    /**
+     * @return the signature of a method, consisting of its generic return type, name and generic parameter types
+     */
+    public static String signature(Method method) {
+        StringBuilder signature = new StringBuilder(method.getGenericReturnType().getTypeName())
+                .append(' ').append(method.getName()).append('(');
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(parameterTypes[i].getTypeName());
+        }
+        return signature.append(')').toString();
+    }
+
+    private static String hash(List<String> signatures) {
+        return Hashing.sha256().hashString(String.join("\n", signatures), StandardCharsets.UTF_8)
+                .toString().substring(0, 16);
+    }
+
+    /**
+     * @return the methods, indexed by their IDs
+     */
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the method table sent in the handshake, i.e. <code>{schema, methods: [{id, signature}...]}</code>
+     */
+    public Map<String, Object> toTable() {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (int id = 0; id < signatures.size(); id++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(ID, id);
+            entry.put(SIGNATURE, signatures.get(id));
+            entries.add(entry);
+        }
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put(SCHEMA, hash);
+        table.put(METHODS, entries);
+        return table;
+    }
+
+    /**
+     * Reads the IDs of the methods in a method table received in the handshake.
+     *
+     * @return the IDs by method signature
+     */
+    public static Map<String, Integer> readIds(Map<String, Object> table) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (Object entry : (List<?>) table.get(METHODS)) {
+            Map<?, ?> method = (Map<?, ?>) entry;
+            ids.put((String) method.get(SIGNATURE), ((Number) method.get(ID)).intValue());
+        }
+        return ids;
+    }
+
+    /**
+     * @return the schema hash of a method table received in the handshake
+     */
+    public static String readHash(Map<String, Object> table) {
+        return (String) table.get(SCHEMA);
+    }
+}
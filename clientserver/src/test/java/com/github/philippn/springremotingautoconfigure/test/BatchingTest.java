@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.services.PingService.batching.enabled=true",
+        "remote.services.PingService.batching.window=20"})
+class BatchingTest {
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    private CborMapperFactory cborMapperFactory;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testConcurrentInvocations() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String message = i % 4 == 0 ? "pong" : "ping";
+                results.add(executor.submit(() -> {
+                    try {
+                        return pingServiceProxy.ping(message);
+                    } catch (PingException e) {
+                        return e.getMessage();
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 4 == 0 ? "Unsupported message: pong" : "pong", results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testUnresolvableInvocationFailsOnItsOwn() throws Exception {
+        byte[] batch = cborMapperFactory.newMapper().writeValueAsBytes(List.of(
+                List.of("ping", 1, "ping"), List.of("pong", 1, "ping"),
+                List.of("ping", 2, List.of("ping"), "ping"), List.of("ping", 1, "pong")));
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(PingService.class)))
+                .header("Content-Type", "application/cbor")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(batch)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        List<List<Object>> frames = cborMapperFactory.newMapper().readValue(response.body(),
+                new TypeReference<List<List<Object>>>() {});
+        assertEquals(4, frames.size());
+        assertEquals(List.of(true, "pong"), frames.get(0));
+        assertEquals(List.of(false, UnsupportedOperationException.class.getName()), frames.get(1).subList(0, 2));
+        assertEquals(List.of(false, UnsupportedOperationException.class.getName()), frames.get(2).subList(0, 2));
+        assertEquals(List.of(false, PingException.class.getName()), frames.get(3).subList(0, 2));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.server.spring.HttpInvokerServiceExporterRegistrar;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SlowService;
+import com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        // A client of its own, since the one of the test application retries status 503 by itself
+        "remote.services.SlowService.http.tcpNoDelay=true",
+        "remote.server.services.SlowService.bulkhead=slow",
+        "remote.server.bulkheads.slow.threads=1",
+        "remote.server.bulkheads.slow.queueSize=0"})
+class BulkheadTest {
+
+    @Autowired
+    @Qualifier("SlowServiceProxy")
+    private SlowService slowServiceProxy;
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testFullBulkheadRejects() throws Exception {
+        ThreadPoolExecutor bulkhead = applicationContext.getBean(
+                HttpInvokerServiceExporterRegistrar.BULKHEAD_BEAN_NAME_PREFIX + "slow", ThreadPoolExecutor.class);
+        CompletableFuture<Integer> pending = CompletableFuture.supplyAsync(
+                () -> slowServiceProxy.attempt("bulkhead", 1000));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkhead.getActiveCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, gauge("active"));
+        assertThrows(ServiceOverloadedException.class, () -> slowServiceProxy.attempt("rejected", 0));
+        assertEquals(1, meterRegistry.get("remoting.server.bulkhead.rejected")
+                .tag("bulkhead", "slow").functionCounter().count());
+        // Services outside the bulkhead are not affected
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+
+        assertEquals(1, pending.get(5, TimeUnit.SECONDS));
+        assertEquals(1, slowServiceProxy.attempt("accepted", 0));
+        assertEquals(1, gauge("max"));
+        assertEquals(0, gauge("queued"));
+    }
+
+    private double gauge(String state) {
+        return meterRegistry.get("remoting.server.bulkhead." + state).tag("bulkhead", "slow").gauge().value();
+    }
+
+    @TestConfiguration
+    static class MeterRegistryConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.client.spring.HttpInvokerProxyFactoryBean;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.google.common.cache.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class CachingTest {
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void testCachedResults() throws Exception {
+        assertEquals(1, sequenceServiceProxy.invocations("a"));
+        assertEquals(1, sequenceServiceProxy.invocations("a"));
+        assertEquals(1, sequenceServiceProxy.invocations("b"));
+        assertEquals(1, sequenceServiceProxy.invocations("b"));
+        assertEquals(1, sequenceServiceProxy.invocations("a"));
+
+        HttpInvokerProxyFactoryBean factoryBean =
+                applicationContext.getBean("&SequenceServiceProxy", HttpInvokerProxyFactoryBean.class);
+        CacheStats stats = factoryBean.getResultCacheStats()
+                .get(SequenceService.class.getMethod("invocations", String.class));
+        assertEquals(3, stats.hitCount());
+        assertEquals(2, stats.missCount());
+    }
+}
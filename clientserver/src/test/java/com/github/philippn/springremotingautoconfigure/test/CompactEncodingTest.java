@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.cbor.SchemaFingerprint;
+import com.github.philippn.springremotingautoconfigure.test.service.Measurement;
+import com.github.philippn.springremotingautoconfigure.test.service.StatisticsService;
+import com.github.philippn.springremotingautoconfigure.test.service.Summary;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class CompactEncodingTest {
+
+    @Autowired
+    @Qualifier("StatisticsServiceProxy")
+    private StatisticsService statisticsServiceProxy;
+
+    @Autowired
+    private CborMapperFactory cborMapperFactory;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testPositionalEncoding() throws Exception {
+        CBORMapper mapper = cborMapperFactory.newCompactMapper();
+        // An array of "a" and 1.0, without property names
+        assertEquals("9f6161fb3ff0000000000000ff",
+                HexFormat.of().formatHex(mapper.writeValueAsBytes(new Measurement("a", 1.0))));
+        assertEquals(new Measurement("a", 1.0), mapper.readValue(
+                mapper.writeValueAsBytes(new Measurement("a", 1.0)), Measurement.class));
+        assertEquals(SchemaFingerprint.compute(mapper, StatisticsService.class),
+                SchemaFingerprint.compute(cborMapperFactory.newCompactMapper(), StatisticsService.class));
+        // The properties of Summary are ordered differently in the regular encoding
+        assertNotEquals(SchemaFingerprint.compute(mapper, StatisticsService.class),
+                SchemaFingerprint.compute(cborMapperFactory.newMapper(), StatisticsService.class));
+    }
+
+    @Test
+    void testCompactInvocation() {
+        Summary summary = statisticsServiceProxy.summarize(List.of(
+                new Measurement("b", 2.0), new Measurement("a", 4.0), new Measurement("b", 3.0)));
+        assertEquals(3, summary.getCount());
+        assertEquals(3.0, summary.getMean());
+        assertEquals(Set.of("a", "b"), summary.getSensors());
+        assertEquals(new Measurement("a", 4.0), summary.getMaximum());
+    }
+
+    @Test
+    void testMismatchedFingerprint() throws Exception {
+        HttpResponse<Void> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(StatisticsService.class)))
+                .header(SchemaFingerprint.HEADER_NAME, "0000000000000000")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[]{(byte) 0x82, 0x69}))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        assertEquals(409, response.statusCode());
+        assertTrue(response.headers().firstValue(SchemaFingerprint.HEADER_NAME).isPresent());
+    }
+}
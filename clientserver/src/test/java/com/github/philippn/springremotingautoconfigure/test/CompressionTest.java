@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.Measurement;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.github.philippn.springremotingautoconfigure.test.service.StatisticsService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.server.compression.threshold=1024",
+        "remote.server.services.StatisticsService.compression.threshold=0",
+        "remote.services.PingService.compression.threshold=1024",
+        "remote.services.PingService.compression.coding=lz4"})
+class CompressionTest {
+
+    private static final BlockingQueue<String> contentEncodings = new LinkedBlockingQueue<>();
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Autowired
+    @Qualifier("StatisticsServiceProxy")
+    private StatisticsService statisticsServiceProxy;
+
+    @BeforeEach
+    void negotiate() throws Exception {
+        contentEncodings.clear();
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        nextContentEncodings();
+    }
+
+    @Test
+    void testSmallInvocationUncompressed() throws Exception {
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertEquals("request: null, response: null", nextContentEncodings());
+    }
+
+    @Test
+    void testLargeInvocationCompressed() throws Exception {
+        String message = "x".repeat(100_000);
+        PingException e = assertThrows(PingException.class, () -> pingServiceProxy.ping(message));
+        assertEquals("Unsupported message: " + message, e.getMessage());
+        assertEquals("request: lz4, response: lz4", nextContentEncodings());
+    }
+
+    @Test
+    void testLargeAsynchronousInvocationCompressed() throws Exception {
+        String message = "x".repeat(100_000);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> pingServiceProxy.pingAsync(message).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(PingException.class, e.getCause());
+        assertEquals("Unsupported message: " + message, e.getCause().getMessage());
+        assertEquals("request: lz4", nextContentEncodings());
+    }
+
+    @Test
+    void testThresholdPerService() throws Exception {
+        assertEquals(1, statisticsServiceProxy.summarize(List.of(new Measurement("a", 1))).getCount());
+        assertEquals("request: null, response: gzip", nextContentEncodings());
+    }
+
+    @Test
+    void testStreamingResultFlushedBelowThreshold() {
+        // The second element is only produced after the first one must have been received
+        try (Stream<Integer> numbers = assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> sequenceServiceProxy.countSlowly(2, 3000))) {
+            Iterator<Integer> iterator = numbers.iterator();
+            assertEquals(1, assertTimeoutPreemptively(Duration.ofSeconds(1), iterator::next));
+        }
+    }
+
+    /**
+     * The filter records the content encodings only after the response has been sent.
+     */
+    private static String nextContentEncodings() throws InterruptedException {
+        return contentEncodings.poll(10, TimeUnit.SECONDS);
+    }
+
+    @TestConfiguration
+    static class ContentEncodingRecorderConfiguration {
+
+        @Bean
+        Filter contentEncodingRecorder() {
+            return (request, response, chain) -> {
+                chain.doFilter(request, response);
+                String recorded = "request: " + ((HttpServletRequest) request).getHeader("Content-Encoding");
+                if (!request.isAsyncStarted()) {
+                    recorded += ", response: " + ((HttpServletResponse) response).getHeader("Content-Encoding");
+                }
+                contentEncodings.add(recorded);
+            };
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.server.spring.ConcurrencyLimiter;
+import com.github.philippn.springremotingautoconfigure.server.spring.RemotingController;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SlowService;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.server.services.SlowService.limiter.enabled=true",
+        "remote.server.services.SlowService.limiter.initialLimit=1",
+        "remote.server.services.SlowService.limiter.maxLimit=1"})
+class ConcurrencyLimitTest {
+
+    @Autowired
+    @Qualifier("SlowServiceProxy")
+    private SlowService slowServiceProxy;
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void testRequestsOverLimitAreRejected() throws Exception {
+        ConcurrencyLimiter limiter = getController(SlowService.class).getConcurrencyLimiter();
+        assertEquals(1, limiter.getLimit());
+        CompletableFuture<String> pending = slowServiceProxy.sleepAsync(1000);
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getInFlight() == 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(10);
+        }
+        long rejectStart = System.nanoTime();
+        assertThrows(ServiceOverloadedException.class, () -> slowServiceProxy.sleep(10));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> slowServiceProxy.sleepAsync(10).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceOverloadedException.class, e.getCause());
+        // Rejections are reported at once instead of being retried by the HTTP clients
+        assertTrue(System.nanoTime() - rejectStart < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(2, limiter.getRejected());
+        // Other services are not limited by this one
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertNull(getController(PingService.class).getConcurrencyLimiter());
+
+        assertEquals("awake", pending.get(5, TimeUnit.SECONDS));
+        awaitNoneInFlight(limiter);
+        assertEquals("awake", slowServiceProxy.sleep(10));
+    }
+
+    /**
+     * Waits for the permit of a completed invocation, which the server releases only after
+     * the client may have received the response.
+     */
+    private static void awaitNoneInFlight(ConcurrencyLimiter limiter) throws InterruptedException {
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getInFlight() > 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(10);
+        }
+    }
+
+    private RemotingController getController(Class<?> serviceInterface) {
+        return applicationContext.getBean(RemotingUtils.buildMappingPath(serviceInterface), RemotingController.class);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.SlowService;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineContext;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineExceededException;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class DeadlineTest {
+
+    @Autowired
+    @Qualifier("SlowServiceProxy")
+    private SlowService slowServiceProxy;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testAnnotatedDeadline() {
+        assertEquals("awake", slowServiceProxy.sleep(10));
+        long startTime = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> slowServiceProxy.sleep(5000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 2000);
+    }
+
+    @Test
+    void testDeadlinePropagation() {
+        assertEquals(-1, slowServiceProxy.remainingTime());
+        DeadlineContext.Scope scope = DeadlineContext.withTimeout(3000, TimeUnit.MILLISECONDS);
+        try (scope) {
+            long remaining = slowServiceProxy.remainingTime();
+            assertTrue(remaining > 0 && remaining <= 3000, "remaining: " + remaining);
+        }
+        assertNull(DeadlineContext.getDeadline());
+    }
+
+    @Test
+    void testAsyncDeadline() {
+        CompletableFuture<String> future;
+        DeadlineContext.Scope scope = DeadlineContext.withTimeout(200, TimeUnit.MILLISECONDS);
+        try (scope) {
+            future = slowServiceProxy.sleepAsync(5000);
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(DeadlineExceededException.class, e.getCause());
+    }
+
+    @Test
+    void testExpiredRequestIsDropped() throws Exception {
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(SlowService.class)))
+                .header(DeadlineContext.HEADER_NAME, "0")
+                .header("Content-Type", "application/cbor")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[0])).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(504, response.statusCode());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.LetterNotFoundException;
+import com.github.philippn.springremotingautoconfigure.util.ExceptionRegistry;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class ExceptionTransportTest {
+
+    private static final CBORMapper MAPPER = new CBORMapper();
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testBusinessException() throws Exception {
+        assertEquals(1, sequenceServiceProxy.indexOf("abc", "b"));
+        LetterNotFoundException e = assertThrows(LetterNotFoundException.class,
+                () -> sequenceServiceProxy.indexOf("abc", "z"));
+        assertEquals("No z in abc", e.getMessage());
+        assertEquals(0, e.getStackTrace().length);
+    }
+
+    @Test
+    void testExceptionCodes() throws Exception {
+        String hash = new ExceptionRegistry(SequenceService.class, MAPPER).getHash();
+        JsonNode coded = invokeIndexOf(hash);
+        assertFalse(coded.get(0).asBoolean());
+        assertTrue(coded.get(1).isInt());
+        assertEquals("No z in abc", coded.get(2).get("message").asText());
+
+        JsonNode named = invokeIndexOf("mismatch");
+        assertEquals(LetterNotFoundException.class.getName(), named.get(1).asText());
+        assertEquals("No z in abc", named.get(2).get("message").asText());
+    }
+
+    private JsonNode invokeIndexOf(String exceptionHash) throws Exception {
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(SequenceService.class)))
+                .header(ExceptionRegistry.HEADER_NAME, exceptionHash)
+                .header("Content-Type", "application/cbor")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(
+                        MAPPER.writeValueAsBytes(List.of("indexOf", 2, "abc", "z")))).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        return MAPPER.readTree(response.body());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.test.service.EchoService;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.github.philippn.springremotingautoconfigure.util.ServiceSchema;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.handshake=true"})
+class HandshakeTest {
+
+    private static final Queue<Byte> methodKeys = new ConcurrentLinkedQueue<>();
+    private static volatile boolean methodTableChanged;
+    private static volatile int unmarkedRejection;
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    @Qualifier("EchoServiceProxy")
+    private EchoService echoServiceProxy;
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Autowired
+    private CborMapperFactory cborMapperFactory;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testMethodTable() throws Exception {
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(PingService.class)))
+                .GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        Map<String, Object> table = cborMapperFactory.newMapper().readValue(response.body(), new TypeReference<>() {
+        });
+        ServiceSchema schema = new ServiceSchema(PingService.class);
+        assertEquals(schema.getHash(), ServiceSchema.readHash(table));
+        Map<String, Integer> ids = ServiceSchema.readIds(table);
+        assertEquals(2, ids.size());
+        for (int id = 0; id < schema.getMethods().size(); id++) {
+            assertEquals(id, ids.get(ServiceSchema.signature(schema.getMethods().get(id))));
+        }
+    }
+
+    @Test
+    void testInvocationsByMethodId() throws Exception {
+        methodKeys.clear();
+        // Overloads of the same arity are told apart by their IDs
+        assertEquals(43, echoServiceProxy.echo(42));
+        assertEquals("hello", echoServiceProxy.echo("hello"));
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertThrows(PingException.class, () -> pingServiceProxy.ping("pong"));
+        assertEquals("pong", pingServiceProxy.pingAsync("ping").get());
+
+        assertFalse(methodKeys.isEmpty());
+        // The initial byte of an unsigned integer below 24 is the integer itself
+        methodKeys.forEach(key -> assertEquals(0, key & 0xe0));
+    }
+
+    @Test
+    void testAmbiguousMethodNameRejected() throws Exception {
+        byte[] invocation = cborMapperFactory.newMapper().writeValueAsBytes(List.of("echo", 1, "hello"));
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(EchoService.class)))
+                .header("Content-Type", "application/cbor")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(invocation)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(400, response.statusCode());
+        assertEquals(new ServiceSchema(EchoService.class).getHash(),
+                response.headers().firstValue(ServiceSchema.HEADER_NAME).orElse(null));
+    }
+
+    @Test
+    void testMethodIdWithoutTableHashRejected() throws Exception {
+        byte[] invocation = cborMapperFactory.newMapper().writeValueAsBytes(List.of(0, 1, "ping"));
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + RemotingUtils.buildMappingPath(PingService.class)))
+                .header("Content-Type", "application/cbor")
+                .header(ServiceSchema.HEADER_NAME, "0000000000000000")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(invocation)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(409, response.statusCode());
+        assertEquals(new ServiceSchema(PingService.class).getHash(),
+                response.headers().firstValue(ServiceSchema.HEADER_NAME).orElse(null));
+    }
+
+    @Test
+    void testUnmarkedRejectionsReportedAsSuch() throws Exception {
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        for (int status : new int[]{400, 409}) {
+            unmarkedRejection = status;
+            try {
+                // E.g. answered by a gateway in between, which knows nothing of overloads or schemas
+                IllegalStateException e = assertThrows(IllegalStateException.class,
+                        () -> pingServiceProxy.ping("ping"));
+                assertEquals("HTTP request failed: " + status, e.getMessage());
+            } finally {
+                unmarkedRejection = 0;
+            }
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    void testFallbackToNamesOnChangedMethodTable() throws Exception {
+        assertEquals("pong", pingServiceProxy.pingAsync("ping").get());
+        assertEquals(1, sequenceServiceProxy.visits("before"));
+        methodKeys.clear();
+        methodTableChanged = true;
+        try {
+            // Rejected by ID, then sent once more by name
+            assertEquals("pong", pingServiceProxy.pingAsync("ping").get());
+            assertEquals(1, sequenceServiceProxy.visits("after"));
+            assertEquals("pong", pingServiceProxy.ping("ping"));
+        } finally {
+            methodTableChanged = false;
+        }
+        // The initial byte of a text string is 0x60 to 0x7f
+        assertTrue(methodKeys.stream().anyMatch(key -> (key & 0xe0) == 0x60));
+    }
+
+    @TestConfiguration
+    static class MethodKeyRecorderConfiguration {
+
+        @Bean
+        Filter methodKeyRecorder() {
+            return (request, response, chain) -> {
+                if (unmarkedRejection != 0 && "POST".equals(((HttpServletRequest) request).getMethod())) {
+                    ((HttpServletResponse) response).sendError(unmarkedRejection);
+                    return;
+                }
+                ContentCachingRequestWrapper wrapper = new ContentCachingRequestWrapper(methodTableChanged ?
+                        new ChangedMethodTableRequest((HttpServletRequest) request) : (HttpServletRequest) request);
+                chain.doFilter(wrapper, response);
+                byte[] content = wrapper.getContentAsByteArray();
+                if ("POST".equals(wrapper.getMethod()) && content.length > 1) {
+                    methodKeys.add(content[1]);
+                }
+            };
+        }
+    }
+
+    /**
+     * Request claiming another method table than the one of the server, as if it had been redeployed.
+     */
+    private static class ChangedMethodTableRequest extends HttpServletRequestWrapper {
+
+        ChangedMethodTableRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return ServiceSchema.HEADER_NAME.equals(name) && value != null ? "0000000000000000" : value;
+        }
+    }
+}
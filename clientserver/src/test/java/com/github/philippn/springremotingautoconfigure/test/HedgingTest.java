@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.SlowService;
+import com.github.philippn.springremotingautoconfigure.test.service.impl.SlowServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.services.SlowService.hedging.enabled=true",
+        "remote.services.SlowService.hedging.delay=100",
+        "remote.services.SlowService.hedging.budget=1"})
+class HedgingTest {
+
+    @Autowired
+    @Qualifier("SlowServiceProxy")
+    private SlowService slowServiceProxy;
+
+    @Test
+    void testSlowAttemptIsHedged() {
+        long startTime = System.nanoTime();
+        assertEquals(2, slowServiceProxy.attempt("slow", 3000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 2000);
+    }
+
+    @Test
+    void testFastAttemptIsNotHedged() throws Exception {
+        // Warms up the client, whose first invocation may well be slow enough to be hedged
+        slowServiceProxy.attempt("warmup", 0);
+        assertEquals(1, slowServiceProxy.attempt("fast", 0));
+        Thread.sleep(300);
+        assertEquals(1, SlowServiceImpl.getAttempts("fast"));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.server.spring.ConcurrencyLimiter;
+import com.github.philippn.springremotingautoconfigure.server.spring.RemotingController;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SlowService;
+import com.github.philippn.springremotingautoconfigure.test.service.UploadService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.github.philippn.springremotingautoconfigure.util.ServiceOverloadedException;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.http2.enabled=true",
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.services.PingService.http2.enabled=true",
+        "remote.services.UploadService.http2.enabled=true",
+        "remote.services.SlowService.http2.enabled=true",
+        "remote.server.services.SlowService.limiter.enabled=true",
+        "remote.server.services.SlowService.limiter.initialLimit=1",
+        "remote.server.services.SlowService.limiter.maxLimit=1"})
+class Http2Test {
+
+    private static final Queue<String> protocols = new ConcurrentLinkedQueue<>();
+    private static volatile CountDownLatch uploadReceived = new CountDownLatch(1);
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    @Qualifier("UploadServiceProxy")
+    private UploadService uploadServiceProxy;
+
+    @Autowired
+    @Qualifier("SlowServiceProxy")
+    private SlowService slowServiceProxy;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void testInvocationsOverHttp2() throws Exception {
+        protocols.clear();
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertThrows(PingException.class, () -> pingServiceProxy.ping("pong"));
+        assertEquals("pong", pingServiceProxy.pingAsync("ping").get());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> pingServiceProxy.pingAsync("pong").get());
+        assertInstanceOf(PingException.class, e.getCause());
+
+        assertFalse(protocols.isEmpty());
+        protocols.forEach(protocol -> assertEquals("HTTP/2.0", protocol));
+    }
+
+    @Test
+    void testUploadOverHttp2() throws Exception {
+        uploadReceived = new CountDownLatch(1);
+        byte[] content = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        // Only hands out its second half once the server received the request, i.e. it is streamed
+        InputStream upload = new SequenceInputStream(new ByteArrayInputStream(content, 0, content.length / 2),
+                new InputStream() {
+
+                    private final InputStream rest = new ByteArrayInputStream(
+                            content, content.length / 2, content.length / 2);
+
+                    @Override
+                    public int read() throws IOException {
+                        awaitUploadReceived();
+                        return rest.read();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        awaitUploadReceived();
+                        return rest.read(b, off, len);
+                    }
+                });
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                uploadServiceProxy.checksum("SHA-256", upload));
+    }
+
+    @Test
+    void testUploadFailure() {
+        IOException failure = new IOException("Broken upload");
+        InputStream upload = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw failure;
+            }
+        };
+        assertEquals(failure, assertThrows(IOException.class,
+                () -> uploadServiceProxy.checksum("SHA-256", upload)));
+    }
+
+    @Test
+    void testOverloadNotRetried() throws Exception {
+        ConcurrencyLimiter limiter = applicationContext.getBean(RemotingUtils.buildMappingPath(SlowService.class),
+                RemotingController.class).getConcurrencyLimiter();
+        CompletableFuture<String> pending = slowServiceProxy.sleepAsync(1000);
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getInFlight() == 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(10);
+        }
+        long rejectStart = System.nanoTime();
+        assertThrows(ServiceOverloadedException.class, () -> slowServiceProxy.sleep(10));
+        assertTrue(System.nanoTime() - rejectStart < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals("awake", pending.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitUploadReceived() throws IOException {
+        try {
+            if (!uploadReceived.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("Request not received while reading the upload");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @TestConfiguration
+    static class ProtocolRecorderConfiguration {
+
+        @Bean
+        Filter protocolRecorder() {
+            return (request, response, chain) -> {
+                protocols.add(request.getProtocol());
+                if (((HttpServletRequest) request).getRequestURI().contains("UploadService")) {
+                    uploadReceived.countDown();
+                }
+                chain.doFilter(request, response);
+            };
+        }
+    }
+}
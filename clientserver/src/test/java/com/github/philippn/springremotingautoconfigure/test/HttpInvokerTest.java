@@ -23,7 +23,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -59,4 +64,38 @@ class HttpInvokerTest {
             assertEquals("Unsupported message: pong", e.getMessage());
         }
     }
+
+    @Test
+    void testLargeArgument() {
+        String message = "x".repeat(200_000);
+        try {
+            pingServiceProxy.ping(message);
+            fail();
+        } catch (PingException e) {
+            assertEquals("Unsupported message: " + message, e.getMessage());
+        }
+    }
+
+    @Test
+    void testAsynchronous() throws Exception {
+        assertEquals("pong", pingServiceProxy.pingAsync("ping").get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testAsynchronousCompletionOffIoThreads() throws Exception {
+        String thread = pingServiceProxy.pingAsync("ping")
+                .thenApply(result -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+        assertFalse(thread.startsWith("httpclient-dispatch"), thread);
+    }
+
+    @Test
+    void testAsynchronousException() throws Exception {
+        try {
+            pingServiceProxy.pingAsync("pong").get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertInstanceOf(PingException.class, e.getCause());
+            assertEquals("Unsupported message: pong", e.getCause().getMessage());
+        }
+    }
 }
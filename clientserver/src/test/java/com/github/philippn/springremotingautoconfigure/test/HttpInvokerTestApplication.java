@@ -17,6 +17,8 @@ package com.github.philippn.springremotingautoconfigure.test;
 
 import com.github.philippn.springremotingautoconfigure.cbor.CborMapperCustomizer;
 import com.github.philippn.springremotingautoconfigure.cbor.CborMapperFactory;
+import com.github.philippn.springremotingautoconfigure.client.spring.RemotingHttpAsyncClients;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +28,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import com.github.philippn.springremotingautoconfigure.client.annotation.EnableHttpInvokerAutoProxy;
 import com.github.philippn.springremotingautoconfigure.server.annotation.EnableHttpInvokerAutoExport;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
 
 import java.util.List;
 
@@ -50,7 +53,13 @@ public class HttpInvokerTestApplication {
     }
 
     @Bean
+    @Profile("!" + PooledHttpClientTest.PROFILE)
     public CloseableHttpClient httpClient() {
         return HttpClients.createDefault();
     }
+
+    @Bean
+    public CloseableHttpAsyncClient asyncHttpClient() {
+        return RemotingHttpAsyncClients.createDefault();
+    }
 }
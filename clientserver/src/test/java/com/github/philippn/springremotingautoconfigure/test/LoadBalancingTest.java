@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.client.spring.EndpointBalancer;
+import com.github.philippn.springremotingautoconfigure.client.spring.HttpInvokerProxyFactoryBean;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.github.philippn.springremotingautoconfigure.util.CborMediaType;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Balances invocations over this test's server and a replica started next to it.
+ *
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.services.PingService.balancer.maxFailures=1",
+        "remote.services.PingService.balancer.ejectionTime=60000",
+        "remote.services.SequenceService.stringRefs=true",
+        "remote.services.SequenceService.compression.threshold=0"})
+class LoadBalancingTest {
+
+    private static final HashFunction ROUTING_HASH = Hashing.murmur3_128();
+
+    private static final Queue<Integer> ports = new ConcurrentLinkedQueue<>();
+
+    private static final Queue<String> legacyRequests = new ConcurrentLinkedQueue<>();
+
+    private static ConfigurableApplicationContext replica;
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @DynamicPropertySource
+    static void endpoints(DynamicPropertyRegistry registry) throws IOException {
+        replica = new SpringApplicationBuilder(HttpInvokerTestApplication.class, PortRecorderConfiguration.class,
+                LegacyServerConfiguration.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton(
+                        "testConfigurationExcludeFilter", new TestConfigurationExcludeFilter()))
+                .properties("server.port=0")
+                .run();
+        String local = "http://localhost:${local.server.port}";
+        String remote = "http://localhost:" + replica.getEnvironment().getProperty("local.server.port");
+        int unused;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unused = socket.getLocalPort();
+        }
+        registry.add("remote.services.SequenceService.endpoints", () -> local + ", " + remote);
+        registry.add("remote.services.PingService.endpoints",
+                () -> local + "," + remote + ",http://localhost:" + unused);
+    }
+
+    @AfterAll
+    static void stopReplica() {
+        replica.close();
+    }
+
+    @BeforeEach
+    void clear() {
+        ports.clear();
+    }
+
+    @Test
+    void testRoundRobin() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(List.of(1, 2, 3), sequenceServiceProxy.count(3).toList());
+        }
+        assertEquals(2, ports.stream().distinct().count());
+        assertEquals(2, ports.stream().collect(Collectors.groupingBy(port -> port, Collectors.counting()))
+                .values().stream().mapToLong(Long::longValue).min().orElse(0));
+    }
+
+    @Test
+    void testFailingEndpointEjected() throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            try {
+                assertEquals("pong", pingServiceProxy.ping("ping"));
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        }
+        assertEquals(1, failures.size());
+        assertEquals(8, ports.size());
+        List<EndpointBalancer.Endpoint> endpoints = proxyFactory("PingServiceProxy")
+                .getEndpointBalancer().getEndpoints();
+        assertFalse(endpoints.get(0).isEjected());
+        assertFalse(endpoints.get(1).isEjected());
+        assertTrue(endpoints.get(2).isEjected());
+    }
+
+    @Test
+    void testCapabilitiesNegotiatedPerEndpoint() throws Exception {
+        legacyRequests.clear();
+        String word = "tenant-0123456789";
+        for (int i = 0; i < 6; i++) {
+            List<String> words = new ArrayList<>();
+            sequenceServiceProxy.repeat(word, 100).forEach(words::add);
+            assertEquals(Collections.nCopies(100, word), words);
+        }
+        assertEquals(3, legacyRequests.size());
+        legacyRequests.forEach(request -> assertEquals(CborMediaType.CBOR + ", null", request));
+        List<EndpointBalancer.Endpoint> endpoints = proxyFactory("SequenceServiceProxy")
+                .getEndpointBalancer().getEndpoints();
+        assertTrue(endpoints.get(0).isStringRefAccepted());
+        assertNotNull(endpoints.get(0).getRequestCoding());
+        assertFalse(endpoints.get(1).isStringRefAccepted());
+        assertNull(endpoints.get(1).getRequestCoding());
+    }
+
+    @Test
+    void testEjectedEndpointProbedBackIn() throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(List.of("a", "b"),
+                EndpointBalancer.Strategy.ROUND_ROBIN, 2, 0, 50);
+        EndpointBalancer.Endpoint a = balancer.getEndpoints().get(0);
+        for (int i = 0; i < 2; i++) {
+            EndpointBalancer.Selection selected = balancer.select();
+            selected.failed();
+            balancer.select().succeeded(0);
+        }
+        assertTrue(a.isEjected());
+        for (int i = 0; i < 3; i++) {
+            EndpointBalancer.Selection selected = balancer.select();
+            assertNotSame(a, selected.getEndpoint());
+            selected.succeeded(0);
+        }
+
+        Thread.sleep(60);
+        // A single invocation probes the endpoint once it is its turn, the others avoid it meanwhile
+        EndpointBalancer.Selection probe = balancer.select();
+        if (probe.getEndpoint() != a) {
+            probe.succeeded(0);
+            probe = balancer.select();
+        }
+        assertSame(a, probe.getEndpoint());
+        assertTrue(probe.isProbe());
+        EndpointBalancer.Selection other = balancer.select();
+        assertNotSame(a, other.getEndpoint());
+        other.succeeded(0);
+        probe.succeeded(0);
+        assertFalse(a.isEjected());
+    }
+
+    @Test
+    void testOnlyProbeJudgesEjectedEndpoint() throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(List.of("a", "b"),
+                EndpointBalancer.Strategy.ROUND_ROBIN, 1, 0, 50);
+        EndpointBalancer.Endpoint a = balancer.getEndpoints().get(0);
+        EndpointBalancer.Selection stale = selectEndpoint(balancer, a);
+        selectEndpoint(balancer, a).failed();
+        assertTrue(a.isEjected());
+
+        Thread.sleep(60);
+        EndpointBalancer.Selection probe = selectEndpoint(balancer, a);
+        assertTrue(probe.isProbe());
+        // An invocation started before the ejection, e.g. a hedge, neither lets another probe through...
+        stale.release();
+        for (int i = 0; i < 4; i++) {
+            EndpointBalancer.Selection selected = balancer.select();
+            assertNotSame(a, selected.getEndpoint());
+            selected.succeeded(0);
+        }
+        // ...nor keeps the failed probe from ejecting the endpoint again at once
+        probe.failed();
+        Thread.sleep(60);
+        for (int i = 0; i < 4; i++) {
+            EndpointBalancer.Selection selected = balancer.select();
+            assertNotSame(a, selected.getEndpoint());
+            selected.succeeded(0);
+        }
+        assertTrue(a.isEjected());
+    }
+
+    private static EndpointBalancer.Selection selectEndpoint(EndpointBalancer balancer,
+                                                             EndpointBalancer.Endpoint endpoint) {
+        EndpointBalancer.Selection selection = balancer.select();
+        while (selection.getEndpoint() != endpoint) {
+            selection.succeeded(0);
+            selection = balancer.select();
+        }
+        return selection;
+    }
+
+    @Test
+    void testLeastOutstanding() {
+        EndpointBalancer balancer = new EndpointBalancer(List.of("a", "b", "c"),
+                EndpointBalancer.Strategy.forName("least-outstanding"), 3, 0, 1000);
+        EndpointBalancer.Selection first = balancer.select();
+        EndpointBalancer.Selection second = balancer.select();
+        EndpointBalancer.Selection third = balancer.select();
+        assertEquals(3, List.of(first, second, third).stream().map(EndpointBalancer.Selection::getEndpoint)
+                .distinct().count());
+        second.succeeded(0);
+        assertSame(second.getEndpoint(), balancer.select().getEndpoint());
+        assertThrows(IllegalArgumentException.class, () -> EndpointBalancer.Strategy.forName("random"));
+    }
+
+    @Test
+    void testRoutingKeyStaysOnEndpoint() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            for (int visit = 1; visit <= 3; visit++) {
+                assertEquals(visit, sequenceServiceProxy.visits("key-" + i));
+            }
+        }
+        assertEquals(2, ports.stream().distinct().count());
+    }
+
+    @Test
+    void testEjectionOnlyMovesAffectedKeys() throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(List.of("a", "b", "c"),
+                EndpointBalancer.Strategy.ROUND_ROBIN, 1, 0, 60000);
+        Map<String, EndpointBalancer.Endpoint> before = route(balancer);
+        EndpointBalancer.Endpoint c = balancer.getEndpoints().get(2);
+        String keyOfC = before.entrySet().stream().filter(entry -> entry.getValue() == c)
+                .map(Map.Entry::getKey).findFirst().orElseThrow();
+        balancer.select(ROUTING_HASH.hashString(keyOfC, StandardCharsets.UTF_8)).failed();
+        assertTrue(c.isEjected());
+
+        Map<String, EndpointBalancer.Endpoint> after = route(balancer);
+        Set<EndpointBalancer.Endpoint> targets = new HashSet<>();
+        before.forEach((key, endpoint) -> {
+            if (endpoint == c) {
+                assertNotSame(c, after.get(key));
+                targets.add(after.get(key));
+            } else {
+                assertSame(endpoint, after.get(key));
+            }
+        });
+        assertEquals(2, targets.size());
+    }
+
+    private static Map<String, EndpointBalancer.Endpoint> route(EndpointBalancer balancer) {
+        Map<String, EndpointBalancer.Endpoint> routes = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            EndpointBalancer.Selection selection = balancer.select(
+                    ROUTING_HASH.hashString("key-" + i, StandardCharsets.UTF_8));
+            selection.release();
+            routes.put("key-" + i, selection.getEndpoint());
+        }
+        return routes;
+    }
+
+    private HttpInvokerProxyFactoryBean proxyFactory(String beanName) {
+        return applicationContext.getBean("&" + beanName, HttpInvokerProxyFactoryBean.class);
+    }
+
+    @TestConfiguration
+    static class PortRecorderConfiguration {
+
+        @Bean
+        Filter portRecorder() {
+            return (request, response, chain) -> {
+                // Recorded before responding, since the test checks the ports once it has the response
+                ports.add(request.getLocalPort());
+                chain.doFilter(request, response);
+            };
+        }
+    }
+
+    /**
+     * Makes the replica behave like a server predating CBOR string references and request compression,
+     * recording the content type and coding of the invocations it receives. Not a test configuration,
+     * so that it only applies to the replica.
+     */
+    static class LegacyServerConfiguration {
+
+        @Bean
+        Filter legacyServer() {
+            return (request, response, chain) -> {
+                HttpServletRequest httpRequest = (HttpServletRequest) request;
+                if ("POST".equals(httpRequest.getMethod())) {
+                    legacyRequests.add(httpRequest.getContentType() + ", " +
+                            httpRequest.getHeader(HttpHeaders.CONTENT_ENCODING));
+                }
+                chain.doFilter(new HttpServletRequestWrapper(httpRequest) {
+
+                    @Override
+                    public String getHeader(String name) {
+                        return HttpHeaders.ACCEPT.equalsIgnoreCase(name) ? null : super.getHeader(name);
+                    }
+                }, new HttpServletResponseWrapper((HttpServletResponse) response) {
+
+                    @Override
+                    public void setHeader(String name, String value) {
+                        if (!HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(name)) {
+                            super.setHeader(name, value);
+                        }
+                    }
+                });
+            };
+        }
+    }
+
+    /**
+     * Keeps the nested configurations of the tests out of the replica, as the test context does.
+     */
+    static class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class MetricsTest {
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testInvocationMetrics() throws Exception {
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertThrows(PingException.class, () -> pingServiceProxy.ping("pong"));
+        assertEquals("pong", pingServiceProxy.pingAsync("ping").get());
+
+        assertEquals(2, calls("remoting.client", "ping", "none").count());
+        assertEquals(1, calls("remoting.client", "ping", "PingException").count());
+        assertEquals(1, calls("remoting.client", "pingAsync", "none").count());
+        assertEquals(3, phase("remoting.client", "wait").count());
+        assertEquals(3, meterRegistry.get("remoting.client.request.size")
+                .tag("method", "ping").summary().count());
+        assertTrue(meterRegistry.get("remoting.client.response.size")
+                .tag("method", "ping").summary().totalAmount() > 0);
+
+        // The server records an invocation once its response has been written
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (serverCalls() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, calls("remoting.server", "ping", "none").count());
+        assertEquals(1, calls("remoting.server", "ping", "PingException").count());
+        assertEquals(3, phase("remoting.server", "invoke").count());
+        assertTrue(meterRegistry.get("remoting.server.request.size")
+                .tag("method", "ping").summary().totalAmount() > 0);
+    }
+
+    private long serverCalls() {
+        return meterRegistry.find("remoting.server.calls").tag("method", "ping").timers().stream()
+                .mapToLong(Timer::count).sum();
+    }
+
+    private Timer calls(String prefix, String method, String exception) {
+        return meterRegistry.get(prefix + ".calls").tag("service", "PingService")
+                .tag("method", method).tag("exception", exception).timer();
+    }
+
+    private Timer phase(String prefix, String phase) {
+        return meterRegistry.get(prefix + ".phase").tag("method", "ping").tag("phase", phase).timer();
+    }
+
+    @TestConfiguration
+    static class MeterRegistryConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
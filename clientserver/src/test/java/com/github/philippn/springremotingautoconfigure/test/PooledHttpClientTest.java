@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.client.spring.HttpInvokerProxyFactoryBean;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.http.maxTotal=20",
+        "remote.services.SequenceService.http.maxPerRoute=3"})
+@ActiveProfiles(PooledHttpClientTest.PROFILE)
+class PooledHttpClientTest {
+
+    /**
+     * Leaves out the <code>CloseableHttpClient</code> bean of the test application, which proxies would use otherwise
+     */
+    static final String PROFILE = "pooledHttpClient";
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void testConnectionPools() throws Exception {
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        PoolStats shared = proxyFactory("PingServiceProxy").getConnectionPoolStats();
+        assertEquals(20, shared.getMax());
+        assertEquals(0, shared.getLeased());
+        assertEquals(1, shared.getAvailable());
+
+        // Overriding a client property gives the service a pool of its own
+        assertEquals(1, sequenceServiceProxy.invocations("pooled"));
+        PoolStats own = proxyFactory("SequenceServiceProxy").getConnectionPoolStats();
+        assertEquals(20, own.getMax());
+        assertEquals(1, own.getAvailable());
+        assertEquals(1, proxyFactory("PingServiceProxy").getConnectionPoolStats().getAvailable());
+    }
+
+    private HttpInvokerProxyFactoryBean proxyFactory(String beanName) {
+        return applicationContext.getBean("&" + beanName, HttpInvokerProxyFactoryBean.class);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.UploadService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class StreamingArgumentTest {
+
+    private static final long UPLOAD_SIZE = 32L * 1024 * 1024;
+
+    @Autowired
+    @Qualifier("UploadServiceProxy")
+    private UploadService uploadServiceProxy;
+
+    @Test
+    void testInputStream() throws Exception {
+        DigestInputStream content = new DigestInputStream(new GeneratedInputStream(UPLOAD_SIZE),
+                MessageDigest.getInstance("SHA-256"));
+        String checksum = uploadServiceProxy.checksum("SHA-256", content);
+        assertEquals(HexFormat.of().formatHex(content.getMessageDigest().digest()), checksum);
+    }
+
+    @Test
+    void testChannel() throws Exception {
+        assertEquals(100_000, uploadServiceProxy.size(Channels.newChannel(
+                new ByteArrayInputStream(new byte[100_000]))));
+        assertEquals(0, uploadServiceProxy.size(Channels.newChannel(new ByteArrayInputStream(new byte[0]))));
+        assertEquals(-1, uploadServiceProxy.size(null));
+    }
+
+    @Test
+    void testStream() {
+        assertEquals(5_000_050_000L, uploadServiceProxy.sum(IntStream.rangeClosed(1, 100_000).boxed()));
+    }
+
+    /**
+     * Produces pseudo-random content without holding it in memory.
+     */
+    private static class GeneratedInputStream extends InputStream {
+
+        private final Random random = new Random(42);
+        private long remaining;
+
+        GeneratedInputStream(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            return random.nextInt(256);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(len, remaining);
+            byte[] chunk = new byte[count];
+            random.nextBytes(chunk);
+            System.arraycopy(chunk, 0, b, off, count);
+            remaining -= count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}"})
+class StreamingTest {
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Test
+    void testStream() {
+        try (Stream<Integer> numbers = sequenceServiceProxy.count(100_000)) {
+            assertEquals(5_000_050_000L, numbers.mapToLong(Integer::longValue).sum());
+        }
+    }
+
+    @Test
+    void testUnboundedStreamClosedEarly() {
+        try (Stream<Integer> numbers = sequenceServiceProxy.count(-1)) {
+            assertEquals(List.of(1, 2, 3), numbers.limit(3).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void testStreamFailure() {
+        List<Integer> received = new ArrayList<>();
+        Iterator<Integer> numbers = sequenceServiceProxy.countThenFail(3).iterator();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> numbers.forEachRemaining(received::add));
+        assertEquals("Failed after 3", e.getMessage());
+        assertEquals(List.of(1, 2, 3), received);
+    }
+
+    @Test
+    void testIterator() {
+        List<String> letters = new ArrayList<>();
+        sequenceServiceProxy.spell("remoting").forEachRemaining(letters::add);
+        assertEquals(List.of("r", "e", "m", "o", "t", "i", "n", "g"), letters);
+    }
+
+    @Test
+    void testIterable() {
+        List<String> words = new ArrayList<>();
+        Iterable<String> repeated = sequenceServiceProxy.repeat("ping", 3);
+        repeated.forEach(words::add);
+        assertEquals(List.of("ping", "ping", "ping"), words);
+        assertThrows(IllegalStateException.class, repeated::iterator);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.test.service.Measurement;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.github.philippn.springremotingautoconfigure.test.service.StatisticsService;
+import com.github.philippn.springremotingautoconfigure.test.service.Summary;
+import com.github.philippn.springremotingautoconfigure.util.CborMediaType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Philipp Nanz
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "remote.baseUrl=http://localhost:${local.server.port}",
+        "remote.services.SequenceService.stringRefs=true",
+        "remote.services.StatisticsService.stringRefs=true",
+        "remote.services.StatisticsService.batching.enabled=true",
+        "remote.services.StatisticsService.batching.window=50"})
+class StringRefTest {
+
+    private static final BlockingQueue<String> contentTypes = new LinkedBlockingQueue<>();
+
+    @Autowired
+    @Qualifier("SequenceServiceProxy")
+    private SequenceService sequenceServiceProxy;
+
+    @Autowired
+    @Qualifier("PingServiceProxy")
+    private PingService pingServiceProxy;
+
+    @Autowired
+    @Qualifier("StatisticsServiceProxy")
+    private StatisticsService statisticsServiceProxy;
+
+    @BeforeEach
+    void clear() {
+        contentTypes.clear();
+    }
+
+    @Test
+    void testStringRefsNegotiated() throws Exception {
+        String word = "tenant-0123456789";
+        assertEquals(Collections.nCopies(1000, word), toList(sequenceServiceProxy.repeat(word, 1000)));
+        assertEquals("request: " + CborMediaType.CBOR + ", response: " + CborMediaType.CBOR_STRINGREF,
+                nextContentTypes());
+        assertEquals(Collections.nCopies(3, word), toList(sequenceServiceProxy.repeat(word, 3)));
+        assertEquals("request: " + CborMediaType.CBOR_STRINGREF + ", response: " + CborMediaType.CBOR_STRINGREF,
+                nextContentTypes());
+    }
+
+    @Test
+    void testStringRefsNotRequested() throws Exception {
+        assertEquals("pong", pingServiceProxy.ping("ping"));
+        assertEquals("request: " + CborMediaType.CBOR + ", response: " + CborMediaType.CBOR, nextContentTypes());
+    }
+
+    @Test
+    void testStringRefsInBatches() throws Exception {
+        List<Measurement> measurements = List.of(new Measurement("sensor-0123456789", 1),
+                new Measurement("sensor-0123456789", 3));
+        assertEquals(2, statisticsServiceProxy.summarize(measurements).getCount());
+        nextContentTypes();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // Later invocations of a batch refer to the strings of the first one
+            List<Future<Summary>> summaries = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                summaries.add(executor.submit(() -> statisticsServiceProxy.summarize(measurements)));
+            }
+            for (Future<Summary> summary : summaries) {
+                assertEquals(2, summary.get().getMean());
+                assertEquals(Set.of("sensor-0123456789"), summary.get().getSensors());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("request: " + CborMediaType.CBOR_STRINGREF + ", response: " + CborMediaType.CBOR_STRINGREF,
+                nextContentTypes());
+    }
+
+    private static List<String> toList(Iterable<String> elements) {
+        List<String> list = new ArrayList<>();
+        elements.forEach(list::add);
+        return list;
+    }
+
+    /**
+     * The filter records the content types only after the response has been sent.
+     */
+    private static String nextContentTypes() throws InterruptedException {
+        return contentTypes.poll(10, TimeUnit.SECONDS);
+    }
+
+    @TestConfiguration
+    static class ContentTypeRecorderConfiguration {
+
+        @Bean
+        Filter contentTypeRecorder() {
+            return (request, response, chain) -> {
+                chain.doFilter(request, response);
+                contentTypes.add("request: " + ((HttpServletRequest) request).getContentType() +
+                        ", response: " + ((HttpServletResponse) response).getContentType());
+            };
+        }
+    }
+}
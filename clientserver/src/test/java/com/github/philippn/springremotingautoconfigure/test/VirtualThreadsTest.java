@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test;
+
+import com.github.philippn.springremotingautoconfigure.server.spring.HttpInvokerServiceExporterRegistrar;
+import com.github.philippn.springremotingautoconfigure.test.service.PingService;
+import com.github.philippn.springremotingautoconfigure.test.service.impl.PingServiceImpl;
+import com.github.philippn.springremotingautoconfigure.util.RemotingUtils;
+import com.github.philippn.springremotingautoconfigure.util.VirtualThreads;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * @author Philipp Nanz
+ */
+class VirtualThreadsTest {
+
+    @Test
+    void testExecutorWiring() {
+        HttpInvokerServiceExporterRegistrar registrar = new HttpInvokerServiceExporterRegistrar();
+        registrar.setEnvironment(new MockEnvironment().withProperty("remote.server.virtualThreads", "true"));
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+        registry.registerBeanDefinition("pingService", new RootBeanDefinition(PingServiceImpl.class));
+        registrar.registerBeanDefinitions(AnnotationMetadata.introspect(HttpInvokerTestApplication.class), registry);
+
+        BeanDefinition executor = registry.getBeanDefinition(
+                HttpInvokerServiceExporterRegistrar.VIRTUAL_THREAD_EXECUTOR_BEAN_NAME);
+        assertEquals(VirtualThreads.class.getName(), executor.getBeanClassName());
+        assertEquals("newVirtualThreadPerTaskExecutor", executor.getFactoryMethodName());
+        BeanDefinition controller = registry.getBeanDefinition(RemotingUtils.buildMappingPath(PingService.class));
+        RuntimeBeanReference reference = assertInstanceOf(RuntimeBeanReference.class,
+                controller.getPropertyValues().get("executor"));
+        assertEquals(HttpInvokerServiceExporterRegistrar.VIRTUAL_THREAD_EXECUTOR_BEAN_NAME, reference.getBeanName());
+    }
+
+    @Test
+    void testServerStartupFailsWithoutVirtualThreads() {
+        assumeFalse(VirtualThreads.isSupported());
+        Exception e = assertThrows(Exception.class, () -> new SpringApplicationBuilder(HttpInvokerTestApplication.class)
+                .properties("server.port=0", "remote.server.virtualThreads=true").run().close());
+        assertUnsupported(e);
+    }
+
+    @Test
+    void testProxyCreationFailsWithoutVirtualThreads() {
+        assumeFalse(VirtualThreads.isSupported());
+        // Proxies are created lazily, on first injection
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(HttpInvokerTestApplication.class)
+                .properties("server.port=0", "remote.virtualThreads=true").run()) {
+            assertUnsupported(assertThrows(Exception.class, () -> context.getBean("PingServiceProxy")));
+        }
+    }
+
+    private static void assertUnsupported(Exception e) {
+        Throwable cause = NestedExceptionUtils.getRootCause(e);
+        assertInstanceOf(IllegalStateException.class, cause);
+        assertTrue(cause.getMessage().startsWith("Virtual threads require Java 21"), cause.getMessage());
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service;
+
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
+
+/**
+ * @author Philipp Nanz
+ */
+@RemoteExport
+public interface EchoService {
+
+    /**
+     * Returns the given message.
+     * @param message the message
+     * @return the message
+     */
+    String echo(String message);
+
+    /**
+     * Returns the next sequence number, overloading {@link #echo(String)}.
+     * @param sequence the sequence number
+     * @return <code>sequence + 1</code>
+     */
+    int echo(int sequence);
+}
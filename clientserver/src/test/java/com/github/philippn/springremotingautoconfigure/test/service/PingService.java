@@ -18,6 +18,8 @@ package com.github.philippn.springremotingautoconfigure.test.service;
 import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
 import com.github.philippn.springremotingautoconfigure.test.service.exception.PingException;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Philipp Nanz
  */
@@ -30,4 +32,11 @@ public interface PingService {
      * @return <code>pong</code>
      */
     String ping(String message) throws PingException;
+
+    /**
+     * Returns <code>pong</code> asynchronously.
+     * @param message the message
+     * @return a future completing with <code>pong</code>
+     */
+    CompletableFuture<String> pingAsync(String message);
 }
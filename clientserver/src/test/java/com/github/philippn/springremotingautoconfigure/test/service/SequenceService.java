@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service;
+
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteCacheable;
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
+import com.github.philippn.springremotingautoconfigure.annotation.RoutingKey;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.LetterNotFoundException;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * @author Philipp Nanz
+ */
+@RemoteExport
+public interface SequenceService {
+
+    /**
+     * Counts from one.
+     * @param count the number of elements, negative for an unbounded sequence
+     * @return the numbers from one to <code>count</code>
+     */
+    Stream<Integer> count(int count);
+
+    /**
+     * Counts from one, then fails.
+     * @param count the number of elements before the failure
+     * @return the numbers from one to <code>count</code>
+     */
+    Stream<Integer> countThenFail(int count);
+
+    /**
+     * Counts from one, pausing before each number but the first.
+     * @param count the number of elements
+     * @param pauseMillis the pause in milliseconds
+     * @return the numbers from one to <code>count</code>
+     */
+    Stream<Integer> countSlowly(int count, long pauseMillis);
+
+    /**
+     * Spells a word.
+     * @param word the word
+     * @return the letters of the word
+     */
+    Iterator<String> spell(String word);
+
+    /**
+     * Repeats a word.
+     * @param word the word
+     * @param times the number of repetitions
+     * @return the repeated word
+     */
+    Iterable<String> repeat(String word, int times);
+
+    /**
+     * Counts the invocations for a key, caching the result.
+     * @param key the key
+     * @return the number of invocations for the key so far
+     */
+    @RemoteCacheable
+    int invocations(String key);
+
+    /**
+     * Counts the invocations for a key on the server handling them, routing them by the key.
+     * @param key the key
+     * @return the number of invocations for the key on this server so far
+     */
+    int visits(@RoutingKey String key);
+
+    /**
+     * Finds a letter in a word.
+     * @param word the word
+     * @param letter the letter
+     * @return the index of the first occurrence of the letter
+     * @throws LetterNotFoundException if the word does not contain the letter
+     */
+    int indexOf(String word, String letter) throws LetterNotFoundException;
+}
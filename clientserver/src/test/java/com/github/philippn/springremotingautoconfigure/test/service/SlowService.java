@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service;
+
+import com.github.philippn.springremotingautoconfigure.annotation.Idempotent;
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteDeadline;
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author Philipp Nanz
+ */
+@RemoteExport
+public interface SlowService {
+
+    /**
+     * Sleeps, but is given up on by the caller after 200 milliseconds.
+     * @param millis the time to sleep in milliseconds
+     * @return <code>awake</code>
+     */
+    @RemoteDeadline(200)
+    String sleep(long millis);
+
+    /**
+     * Sleeps asynchronously.
+     * @param millis the time to sleep in milliseconds
+     * @return a future completing with <code>awake</code>
+     */
+    CompletableFuture<String> sleepAsync(long millis);
+
+    /**
+     * Returns the time remaining until the deadline of the invocation, as seen by the service.
+     * @return the remaining time in milliseconds, or -1 if there is no deadline
+     */
+    long remainingTime();
+
+    /**
+     * Answers the first attempt for the given ID after the given delay, any later attempt at once.
+     * @param id the ID of the invocation
+     * @param firstDelay the time to delay the first attempt in milliseconds
+     * @return the number of the answering attempt
+     */
+    @Idempotent
+    int attempt(String id, long firstDelay);
+}
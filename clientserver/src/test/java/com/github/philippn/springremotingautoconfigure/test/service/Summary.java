@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service;
+
+import java.util.Set;
+
+/**
+ * @author Philipp Nanz
+ */
+public class Summary {
+
+    private int count;
+    private double mean;
+    private Set<String> sensors;
+    private Measurement maximum;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public Set<String> getSensors() {
+        return sensors;
+    }
+
+    public void setSensors(Set<String> sensors) {
+        this.sensors = sensors;
+    }
+
+    public Measurement getMaximum() {
+        return maximum;
+    }
+
+    public void setMaximum(Measurement maximum) {
+        this.maximum = maximum;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service;
+
+import com.github.philippn.springremotingautoconfigure.annotation.RemoteExport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.stream.Stream;
+
+/**
+ * @author Philipp Nanz
+ */
+@RemoteExport
+public interface UploadService {
+
+    /**
+     * Computes a checksum of uploaded content.
+     * @param algorithm the name of the message digest algorithm
+     * @param content the content
+     * @return the hex encoded checksum
+     */
+    String checksum(String algorithm, InputStream content) throws IOException;
+
+    /**
+     * Counts the bytes of uploaded content.
+     * @param content the content
+     * @return the number of bytes, or -1 if there is no content
+     */
+    long size(ReadableByteChannel content) throws IOException;
+
+    /**
+     * Sums up uploaded numbers.
+     * @param numbers the numbers
+     * @return the sum
+     */
+    long sum(Stream<Integer> numbers);
+}
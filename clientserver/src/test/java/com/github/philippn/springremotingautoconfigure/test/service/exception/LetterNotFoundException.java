@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service.exception;
+
+import com.github.philippn.springremotingautoconfigure.util.RemoteBusinessException;
+
+public class LetterNotFoundException extends RemoteBusinessException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LetterNotFoundException(String message) {
+        super(message);
+    }
+}
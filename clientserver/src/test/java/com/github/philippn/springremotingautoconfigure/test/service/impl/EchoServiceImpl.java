@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service.impl;
+
+import com.github.philippn.springremotingautoconfigure.test.service.EchoService;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author Philipp Nanz
+ */
+@Service
+public class EchoServiceImpl implements EchoService {
+
+    @Override
+    public String echo(String message) {
+        return message;
+    }
+
+    @Override
+    public int echo(int sequence) {
+        return sequence + 1;
+    }
+}
@@ -21,6 +21,10 @@ import org.springframework.stereotype.Service;
 
 import com.github.philippn.springremotingautoconfigure.test.service.PingService;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author Philipp Nanz
  */
@@ -34,4 +38,15 @@ public class PingServiceImpl implements PingService, PingServiceWithMappingPath
         }
         throw new PingException(String.format("Unsupported message: %s", message));
     }
+
+    @Override
+    public CompletableFuture<String> pingAsync(String message) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ping(message);
+            } catch (PingException e) {
+                throw new CompletionException(e);
+            }
+        }, CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service.impl;
+
+import com.github.philippn.springremotingautoconfigure.test.service.SequenceService;
+import com.github.philippn.springremotingautoconfigure.test.service.exception.LetterNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * @author Philipp Nanz
+ */
+@Service
+public class SequenceServiceImpl implements SequenceService {
+
+    private final Map<String, Integer> invocations = new ConcurrentHashMap<>();
+    private final Map<String, Integer> visits = new ConcurrentHashMap<>();
+
+    @Override
+    public Stream<Integer> count(int count) {
+        Stream<Integer> numbers = Stream.iterate(1, i -> i + 1);
+        return count < 0 ? numbers : numbers.limit(count);
+    }
+
+    @Override
+    public Stream<Integer> countSlowly(int count, long pauseMillis) {
+        return Stream.iterate(1, i -> {
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return i + 1;
+        }).limit(count);
+    }
+
+    @Override
+    public Stream<Integer> countThenFail(int count) {
+        return Stream.iterate(1, i -> {
+            if (i == count) {
+                throw new IllegalStateException("Failed after " + count);
+            }
+            return i + 1;
+        });
+    }
+
+    @Override
+    public Iterator<String> spell(String word) {
+        return word.chars().mapToObj(Character::toString).iterator();
+    }
+
+    @Override
+    public Iterable<String> repeat(String word, int times) {
+        return Collections.nCopies(times, word);
+    }
+
+    @Override
+    public int invocations(String key) {
+        return invocations.merge(key, 1, Integer::sum);
+    }
+
+    @Override
+    public int visits(String key) {
+        return visits.merge(key, 1, Integer::sum);
+    }
+
+    @Override
+    public int indexOf(String word, String letter) throws LetterNotFoundException {
+        int index = word.indexOf(letter);
+        if (index < 0) {
+            throw new LetterNotFoundException(String.format("No %s in %s", letter, word));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service.impl;
+
+import com.github.philippn.springremotingautoconfigure.test.service.SlowService;
+import com.github.philippn.springremotingautoconfigure.util.DeadlineContext;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Philipp Nanz
+ */
+@Service
+public class SlowServiceImpl implements SlowService {
+
+    private static final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+    @Override
+    public String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "awake";
+    }
+
+    @Override
+    public CompletableFuture<String> sleepAsync(long millis) {
+        return CompletableFuture.supplyAsync(() -> "awake",
+                CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public long remainingTime() {
+        Long deadline = DeadlineContext.getDeadline();
+        return deadline == null ? -1 : TimeUnit.NANOSECONDS.toMillis(DeadlineContext.remainingNanos(deadline));
+    }
+
+    @Override
+    public int attempt(String id, long firstDelay) {
+        int attempt = attempts.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+        if (attempt == 1) {
+            sleep(firstDelay);
+        }
+        return attempt;
+    }
+
+    /**
+     * @return the number of attempts received for the given ID
+     */
+    public static int getAttempts(String id) {
+        AtomicInteger count = attempts.get(id);
+        return count != null ? count.get() : 0;
+    }
+}
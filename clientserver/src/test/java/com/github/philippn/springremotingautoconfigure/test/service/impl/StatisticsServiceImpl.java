@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service.impl;
+
+import com.github.philippn.springremotingautoconfigure.test.service.Measurement;
+import com.github.philippn.springremotingautoconfigure.test.service.StatisticsService;
+import com.github.philippn.springremotingautoconfigure.test.service.Summary;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * @author Philipp Nanz
+ */
+@Service
+public class StatisticsServiceImpl implements StatisticsService {
+
+    @Override
+    public Summary summarize(List<Measurement> measurements) {
+        Summary summary = new Summary();
+        summary.setCount(measurements.size());
+        summary.setMean(measurements.stream().mapToDouble(Measurement::value).average().orElse(0));
+        summary.setSensors(new TreeSet<>(measurements.stream().map(Measurement::sensor).toList()));
+        summary.setMaximum(measurements.stream().max(Comparator.comparingDouble(Measurement::value)).orElse(null));
+        return summary;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015-2024 Philipp Nanz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.philippn.springremotingautoconfigure.test.service.impl;
+
+import com.github.philippn.springremotingautoconfigure.test.service.UploadService;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * @author Philipp Nanz
+ */
+@Service
+public class UploadServiceImpl implements UploadService {
+
+    @Override
+    public String checksum(String algorithm, InputStream content) throws IOException {
+        try {
+            DigestInputStream digestInput = new DigestInputStream(content, MessageDigest.getInstance(algorithm));
+            digestInput.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(digestInput.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public long size(ReadableByteChannel content) throws IOException {
+        if (content == null) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long size = 0;
+        int read;
+        while ((read = content.read(buffer)) >= 0) {
+            size += read;
+            buffer.clear();
+        }
+        return size;
+    }
+
+    @Override
+    public long sum(Stream<Integer> numbers) {
+        return numbers.mapToLong(Integer::longValue).sum();
+    }
+}